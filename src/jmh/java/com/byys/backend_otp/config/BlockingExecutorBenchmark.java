@@ -0,0 +1,96 @@
+package com.byys.backend_otp.config;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to finish a burst of blocking requests on Tomcat's default 200 platform threads versus one
+ * virtual thread per request. Each request sleeps for {@code latencyMillis} to stand in for a
+ * Twilio, SMTP or JDBC call; with {@code connectionPermits > 0} the blocking part also needs a
+ * permit, modelling the Hikari pool, which caps what either executor can achieve.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BlockingExecutorBenchmark {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Param({"2000"})
+    int requests;
+
+    @Param({"20", "100"})
+    long latencyMillis;
+
+    @Param({"0", "20"})
+    int connectionPermits;
+
+    ExecutorService platform;
+    ExecutorService virtual;
+    Semaphore connections;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        platform = Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+        virtual = Executors.newVirtualThreadPerTaskExecutor();
+        connections = connectionPermits > 0 ? new Semaphore(connectionPermits) : null;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        platform.shutdownNow();
+        virtual.shutdownNow();
+    }
+
+    @Benchmark
+    public int platformThreads() throws Exception {
+        return runBurst(platform);
+    }
+
+    @Benchmark
+    public int virtualThreads() throws Exception {
+        return runBurst(virtual);
+    }
+
+    private int runBurst(ExecutorService executor) throws Exception {
+        List<Future<Integer>> futures = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            futures.add(executor.submit(this::handleRequest));
+        }
+        int done = 0;
+        for (Future<Integer> future : futures) {
+            done += future.get();
+        }
+        return done;
+    }
+
+    private int handleRequest() throws InterruptedException {
+        if (connections == null) {
+            Thread.sleep(latencyMillis);
+            return 1;
+        }
+        connections.acquire();
+        try {
+            Thread.sleep(latencyMillis);
+            return 1;
+        } finally {
+            connections.release();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.byys.backend_otp.referral;
+
+import com.byys.backend_otp.user.UserRegistered;
+import com.byys.backend_otp.user.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency distribution (SampleTime reports p99) of the click-path code lookup: known codes answered
+ * from memory, and junk codes from one client once its database budget is spent. The repository
+ * answers every query as a miss without I/O, so a lookup that reaches it measures the index alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ReferralCodeIndexBenchmark {
+
+    @Param({"200000"})
+    int codeCount;
+
+    String[] codes;
+    String[] junk;
+    ReferralCodeIndex index;
+
+    @Setup
+    public void setUp() {
+        UserRepository misses = (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+                new Class<?>[]{UserRepository.class},
+                (proxy, method, args) -> method.getReturnType() == Optional.class ? Optional.empty() : List.of());
+        index = new ReferralCodeIndex(misses, new SimpleMeterRegistry(), 100_000, Duration.ofMinutes(5), 30, 100_000);
+        codes = new String[codeCount];
+        junk = new String[codeCount];
+        for (int i = 0; i < codeCount; i++) {
+            codes[i] = String.format("C%08X", i * 2654435761L & 0xffffffffL);
+            junk[i] = "J" + Long.toHexString(ThreadLocalRandom.current().nextLong());
+            index.onUserRegistered(new UserRegistered(i + 1L, codes[i]));
+        }
+    }
+
+    @Benchmark
+    public ReferralCodeIndex.Lookup knownCode() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return index.lookup(codes[random.nextInt(codeCount)], "10.0.0." + random.nextInt(256));
+    }
+
+    @Benchmark
+    public ReferralCodeIndex.Lookup junkFromOneClient() {
+        return index.lookup(junk[ThreadLocalRandom.current().nextInt(codeCount)], "192.0.2.1");
+    }
+}
@@ -0,0 +1,82 @@
+package com.byys.backend_otp.security;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request cost of {@link JwtAuthenticationFilter} for a token presented repeatedly: with the
+ * verified-token cache and with the cache disabled (shared parser only). For reference,
+ * {@code legacyParserPerRequest} is the bare verification the filter used to run per request,
+ * building a new parser each time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+public class JwtAuthenticationFilterBenchmark {
+
+    private static final String SECRET = "benchmark-secret-benchmark-secret-benchmark-secret";
+    private static final String ISSUER = "referral-app";
+
+    JwtAuthenticationFilter cachedFilter;
+    JwtAuthenticationFilter uncachedFilter;
+    SecretKey key;
+    String token;
+
+    @Setup
+    public void setUp() {
+        JwtService cached = new JwtService(SECRET, ISSUER, 60, 100_000, new SimpleMeterRegistry());
+        JwtService uncached = new JwtService(SECRET, ISSUER, 60, 0, new SimpleMeterRegistry());
+        // The token carries uid, so the filter never falls back to the phone lookup and needs no UserCache
+        cachedFilter = new JwtAuthenticationFilter(cached, null);
+        uncachedFilter = new JwtAuthenticationFilter(uncached, null);
+        key = Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8));
+        token = cached.generate(1L, "+919000000001", "USER");
+    }
+
+    @Benchmark
+    public Object cachedVerification() throws Exception {
+        return filter(cachedFilter);
+    }
+
+    @Benchmark
+    public Object sharedParserOnly() throws Exception {
+        return filter(uncachedFilter);
+    }
+
+    @Benchmark
+    public Object legacyParserPerRequest() {
+        // What JwtService.verify did before: a fresh parser and full verification on every call
+        var parsed = Jwts.parser().verifyWith(key).build().parseSignedClaims(token);
+        return parsed.getPayload().get("role", String.class);
+    }
+
+    private Object filter(JwtAuthenticationFilter filter) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/auth/otp/me");
+        request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+        try {
+            filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
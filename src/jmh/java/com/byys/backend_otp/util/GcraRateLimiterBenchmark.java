@@ -0,0 +1,92 @@
+package com.byys.backend_otp.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OTP limiter throughput over 100k distinct keys: the GCRA limiter against the fixed-window
+ * {@code synchronized} map it replaced. Keys are pre-populated so both run at their steady-state
+ * size; the legacy map is unbounded, so in production it would keep growing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class GcraRateLimiterBenchmark {
+
+    @Param({"100000"})
+    int keyCount;
+
+    String[] keys;
+    GcraRateLimiter gcra;
+    LegacyFixedWindow legacy;
+
+    @Setup
+    public void setUp() {
+        keys = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "+9190" + String.format("%08d", i);
+        }
+        gcra = new GcraRateLimiter(3, Duration.ofMinutes(5), 200_000);
+        legacy = new LegacyFixedWindow(3);
+        for (String key : keys) {
+            gcra.tryAcquire(key);
+            legacy.tryAcquire(key);
+        }
+    }
+
+    @Benchmark
+    public Duration gcra() {
+        return gcra.tryAcquire(keys[ThreadLocalRandom.current().nextInt(keyCount)]);
+    }
+
+    @Benchmark
+    public boolean legacyFixedWindow() {
+        return legacy.tryAcquire(keys[ThreadLocalRandom.current().nextInt(keyCount)]);
+    }
+
+    /** The limiter previously inlined in OtpService. */
+    static final class LegacyFixedWindow {
+        private final Map<String, Window> windows = new ConcurrentHashMap<>();
+        private final int max;
+
+        LegacyFixedWindow(int max) {
+            this.max = max;
+        }
+
+        boolean tryAcquire(String key) {
+            Window window = windows.computeIfAbsent(key, k -> new Window());
+            synchronized (window) {
+                Instant now = Instant.now();
+                if (window.resetAt.isBefore(now)) {
+                    window.count = 0;
+                    window.resetAt = now.plus(Duration.ofMinutes(5));
+                }
+                if (window.count >= max) {
+                    return false;
+                }
+                window.count++;
+                return true;
+            }
+        }
+
+        private static final class Window {
+            int count;
+            Instant resetAt = Instant.EPOCH;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.byys.backend_otp.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Profile photo resize and encode, from JPEG bytes to JPEG bytes, against the previous
+ * ImageIO.read + getScaledInstance implementation. Run with -Pjmh.profilers=gc to compare
+ * allocation per photo as well as time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ImageResizerBenchmark {
+
+    @Param({"1600x1200", "4032x3024", "6000x4000"})
+    String size;
+
+    byte[] source;
+    ImageResizer resizer;
+
+    @Setup
+    public void setUp() throws IOException {
+        String[] parts = size.split("x");
+        source = syntheticPhoto(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+        resizer = new ImageResizer(500, 0.7f, 50_000_000L, 4);
+    }
+
+    @Benchmark
+    public byte[] resizer() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        resizer.resize(new ByteArrayInputStream(source), out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] legacy() throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(source));
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (width > 500 || height > 500) {
+            float ratio = Math.min(500f / width, 500f / height);
+            width = (int) (width * ratio);
+            height = (int) (height * ratio);
+
+            BufferedImage resizedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = resizedImage.createGraphics();
+            g.drawImage(image.getScaledInstance(width, height, Image.SCALE_SMOOTH), 0, 0, null);
+            g.dispose();
+            image = resizedImage;
+        }
+
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.7f);
+            writer.write(null, new IIOImage(image, null, null), param);
+        }
+        writer.dispose();
+        return out.toByteArray();
+    }
+
+    // Gradients plus noise, so the encoder and the filters see something closer to a photo than a flat fill
+    static byte[] syntheticPhoto(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, new Color(30, 90, 160), width, height, new Color(220, 180, 90)));
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        Random random = new Random(42);
+        for (int y = 0; y < height; y += 3) {
+            for (int x = 0; x < width; x += 3) {
+                image.setRGB(x, y, image.getRGB(x, y) ^ random.nextInt(0x101010));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,309 @@
+package com.byys.backend_otp.analytics;
+
+import com.byys.backend_otp.referral.ReferralEventRecorded;
+import com.byys.backend_otp.referral.ReferralEventType;
+import com.byys.backend_otp.util.CountMinSketch;
+import com.byys.backend_otp.util.Hashing;
+import com.byys.backend_otp.util.HyperLogLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-day click sketches fed from the click path. A HyperLogLog per referrer estimates unique
+ * visitors (ip + user agent), and two count-min sketches count clicks per IP and per
+ * referrer/IP pair so spikes are flagged as the click arrives, without a query. Sketches are
+ * flushed to {@code referral_click_sketches} under this instance's id and reloaded at startup;
+ * reads merge the copies of every instance. Spike thresholds apply to the clicks one instance
+ * sees.
+ */
+@Service
+@Slf4j
+public class ClickSketchService {
+
+    static final int HLL_PRECISION = 10;
+    private static final int CMS_DEPTH = 4;
+    private static final int CMS_WIDTH = 2048;
+    private static final long GLOBAL = 0L;
+    private static final String KIND_VISITORS = "VISITORS_HLL";
+    private static final String KIND_IP_CLICKS = "IP_CLICKS_CMS";
+    private static final String KIND_REFERRER_IP_CLICKS = "REFERRER_IP_CLICKS_CMS";
+
+    private static final String UPSERT_SKETCH_SQL =
+            "INSERT INTO referral_click_sketches (period_start, referrer_user_id, kind, instance_id, payload, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, NOW()) " +
+            "ON CONFLICT (period_start, referrer_user_id, kind, instance_id) " +
+            "DO UPDATE SET payload = EXCLUDED.payload, updated_at = EXCLUDED.updated_at";
+    private static final String UPSERT_SUSPICIOUS_SQL =
+            "INSERT INTO referral_suspicious_ips (period_start, ip_address, referrer_user_id, click_estimate, flagged_at) " +
+            "VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (period_start, ip_address) " +
+            "DO UPDATE SET click_estimate = GREATEST(referral_suspicious_ips.click_estimate, EXCLUDED.click_estimate)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String instanceId;
+    private final long ipThreshold;
+    private final long referrerIpThreshold;
+    private final int memoryDays;
+    private final int retentionDays;
+    private final Counter flaggedCounter;
+    private final Map<LocalDate, DaySketches> days = new ConcurrentHashMap<>();
+    private volatile LocalDate lastPruned;
+
+    public ClickSketchService(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${referral.sketches.instance-id:${HOSTNAME:local}}") String instanceId,
+                              @Value("${referral.sketches.ip-threshold:200}") long ipThreshold,
+                              @Value("${referral.sketches.referrer-ip-threshold:50}") long referrerIpThreshold,
+                              @Value("${referral.sketches.memory-days:2}") int memoryDays,
+                              @Value("${referral.sketches.retention-days:90}") int retentionDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.instanceId = instanceId;
+        this.ipThreshold = ipThreshold;
+        this.referrerIpThreshold = referrerIpThreshold;
+        this.memoryDays = Math.max(1, memoryDays);
+        this.retentionDays = retentionDays;
+        this.flaggedCounter = meterRegistry.counter("referral.clicks.suspicious");
+        meterRegistry.gauge("referral.sketches.referrers", days, all -> all.values().stream()
+                .mapToInt(day -> day.visitors.size()).sum());
+    }
+
+    @PostConstruct
+    void load() {
+        LocalDate from = oldestInMemory();
+        jdbcTemplate.query(
+                "SELECT period_start, referrer_user_id, kind, payload FROM referral_click_sketches " +
+                        "WHERE period_start >= ? AND instance_id = ?",
+                rs -> {
+                    DaySketches day = day(rs.getDate("period_start").toLocalDate());
+                    long referrerId = rs.getLong("referrer_user_id");
+                    byte[] payload = rs.getBytes("payload");
+                    switch (rs.getString("kind")) {
+                        case KIND_VISITORS -> day.visitors.put(referrerId, HyperLogLog.fromBytes(payload));
+                        case KIND_IP_CLICKS -> day.ipClicks.merge(CountMinSketch.fromBytes(payload));
+                        case KIND_REFERRER_IP_CLICKS -> day.referrerIpClicks.merge(CountMinSketch.fromBytes(payload));
+                        default -> { }
+                    }
+                },
+                Date.valueOf(from), instanceId);
+        jdbcTemplate.query(
+                "SELECT period_start, ip_address FROM referral_suspicious_ips WHERE period_start >= ?",
+                rs -> {
+                    day(rs.getDate("period_start").toLocalDate()).flaggedIps.add(rs.getString("ip_address"));
+                },
+                Date.valueOf(from));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReferralEvent(ReferralEventRecorded event) {
+        if (event.eventType() != ReferralEventType.LINK_CLICK || event.ipAddress() == null) {
+            return;
+        }
+        Instant occurredAt = event.occurredAt() != null ? event.occurredAt() : Instant.now();
+        record(LocalDate.ofInstant(occurredAt, ZoneOffset.UTC), event.referrerUserId(),
+                event.ipAddress(), event.userAgent(), occurredAt);
+    }
+
+    void record(LocalDate date, Long referrerUserId, String ip, String userAgent, Instant occurredAt) {
+        if (date.isBefore(oldestInMemory())) {
+            // Its day was flushed and evicted; a fresh sketch would overwrite the stored one
+            log.debug("Ignoring click for {} outside the in-memory window", date);
+            return;
+        }
+        DaySketches day = day(date);
+        day.visitors.computeIfAbsent(referrerUserId, id -> new HyperLogLog(HLL_PRECISION))
+                .add(Hashing.hash64(ip + '|' + (userAgent != null ? userAgent : "")));
+        day.dirtyReferrers.add(referrerUserId);
+
+        long referrerIpClicks = day.referrerIpClicks.add(referrerUserId + "|" + ip, 1);
+        long ipClicks = day.ipClicks.add(ip, 1);
+        day.countersDirty = true;
+
+        if (ipClicks >= ipThreshold) {
+            flag(day, new SuspiciousIp(date, ip, null, ipClicks, occurredAt));
+        } else if (referrerIpClicks >= referrerIpThreshold) {
+            flag(day, new SuspiciousIp(date, ip, referrerUserId, referrerIpClicks, occurredAt));
+        }
+    }
+
+    private void flag(DaySketches day, SuspiciousIp suspicious) {
+        if (day.flaggedIps.add(suspicious.ipAddress())) {
+            day.pendingFlags.add(suspicious);
+            flaggedCounter.increment();
+            log.warn("Flagged suspicious click source {} with ~{} clicks on {}",
+                    suspicious.ipAddress(), suspicious.clickEstimate(), suspicious.day());
+        }
+    }
+
+    /** Whether the IP has been flagged today, from memory. */
+    public boolean isSuspicious(String ip) {
+        DaySketches day = days.get(today());
+        return day != null && day.flaggedIps.contains(ip);
+    }
+
+    public UniqueVisitors uniqueVisitors(Long referrerUserId, LocalDate from, LocalDate to) {
+        Map<LocalDate, HyperLogLog> perDay = new TreeMap<>();
+        jdbcTemplate.query(
+                "SELECT period_start, instance_id, payload FROM referral_click_sketches " +
+                        "WHERE referrer_user_id = ? AND kind = ? AND period_start BETWEEN ? AND ?",
+                rs -> {
+                    LocalDate date = rs.getDate("period_start").toLocalDate();
+                    // This instance's in-memory copy is newer than what it last flushed
+                    if (instanceId.equals(rs.getString("instance_id")) && days.containsKey(date)) {
+                        return;
+                    }
+                    perDay.computeIfAbsent(date, d -> new HyperLogLog(HLL_PRECISION))
+                            .merge(HyperLogLog.fromBytes(rs.getBytes("payload")));
+                },
+                referrerUserId, KIND_VISITORS, Date.valueOf(from), Date.valueOf(to));
+        days.forEach((date, day) -> {
+            HyperLogLog local = day.visitors.get(referrerUserId);
+            if (local != null && !date.isBefore(from) && !date.isAfter(to)) {
+                perDay.computeIfAbsent(date, d -> new HyperLogLog(HLL_PRECISION)).merge(local);
+            }
+        });
+
+        HyperLogLog union = new HyperLogLog(HLL_PRECISION);
+        TreeMap<LocalDate, Long> daily = new TreeMap<>();
+        perDay.forEach((date, sketch) -> {
+            union.merge(sketch);
+            daily.put(date, sketch.estimate());
+        });
+        return new UniqueVisitors(from, to, union.estimate(), daily);
+    }
+
+    public List<SuspiciousIp> suspiciousIps(LocalDate date) {
+        Map<String, SuspiciousIp> byIp = new TreeMap<>();
+        jdbcTemplate.query(
+                "SELECT period_start, ip_address, referrer_user_id, click_estimate, flagged_at " +
+                        "FROM referral_suspicious_ips WHERE period_start = ?",
+                rs -> {
+                    long referrerId = rs.getLong("referrer_user_id");
+                    byIp.put(rs.getString("ip_address"), new SuspiciousIp(
+                            rs.getDate("period_start").toLocalDate(),
+                            rs.getString("ip_address"),
+                            rs.wasNull() ? null : referrerId,
+                            rs.getLong("click_estimate"),
+                            rs.getTimestamp("flagged_at").toInstant()));
+                },
+                Date.valueOf(date));
+        DaySketches day = days.get(date);
+        if (day != null) {
+            day.pendingFlags.forEach(flag -> byIp.putIfAbsent(flag.ipAddress(), flag));
+        }
+        List<SuspiciousIp> result = new ArrayList<>(byIp.values());
+        result.sort(Comparator.comparingLong(SuspiciousIp::clickEstimate).reversed());
+        return result;
+    }
+
+    @Scheduled(initialDelayString = "${referral.sketches.flush-interval:PT1M}",
+            fixedDelayString = "${referral.sketches.flush-interval:PT1M}")
+    public void flush() {
+        try {
+            LocalDate today = today();
+            LocalDate oldest = oldestInMemory();
+            for (Map.Entry<LocalDate, DaySketches> entry : days.entrySet()) {
+                flush(entry.getKey(), entry.getValue());
+                if (entry.getKey().isBefore(oldest)) {
+                    days.remove(entry.getKey());
+                }
+            }
+            if (retentionDays > 0 && !today.equals(lastPruned)) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    Date cutoff = Date.valueOf(today.minusDays(retentionDays));
+                    jdbcTemplate.update("DELETE FROM referral_click_sketches WHERE period_start < ?", cutoff);
+                    jdbcTemplate.update("DELETE FROM referral_suspicious_ips WHERE period_start < ?", cutoff);
+                });
+                lastPruned = today;
+            }
+        } catch (RuntimeException e) {
+            log.error("Click sketch flush failed", e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    private void flush(LocalDate date, DaySketches day) {
+        Date period = Date.valueOf(date);
+        List<Object[]> rows = new ArrayList<>();
+        // Cleared before serializing, so a click racing the flush marks the sketch dirty again
+        for (Long referrerId : List.copyOf(day.dirtyReferrers)) {
+            day.dirtyReferrers.remove(referrerId);
+            rows.add(new Object[]{period, referrerId, KIND_VISITORS, instanceId, day.visitors.get(referrerId).toBytes()});
+        }
+        if (day.countersDirty) {
+            day.countersDirty = false;
+            rows.add(new Object[]{period, GLOBAL, KIND_IP_CLICKS, instanceId, day.ipClicks.toBytes()});
+            rows.add(new Object[]{period, GLOBAL, KIND_REFERRER_IP_CLICKS, instanceId, day.referrerIpClicks.toBytes()});
+        }
+        List<Object[]> flags = new ArrayList<>();
+        List<SuspiciousIp> flushedFlags = List.copyOf(day.pendingFlags);
+        for (SuspiciousIp flag : flushedFlags) {
+            flags.add(new Object[]{period, flag.ipAddress(), flag.referrerUserId(), flag.clickEstimate(),
+                    Timestamp.from(flag.flaggedAt())});
+        }
+        if (rows.isEmpty() && flags.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(UPSERT_SKETCH_SQL, rows);
+                jdbcTemplate.batchUpdate(UPSERT_SUSPICIOUS_SQL, flags);
+            });
+            day.pendingFlags.removeAll(flushedFlags);
+        } catch (RuntimeException e) {
+            rows.stream().filter(row -> KIND_VISITORS.equals(row[2])).forEach(row -> day.dirtyReferrers.add((Long) row[1]));
+            day.countersDirty = true;
+            throw e;
+        }
+    }
+
+    private DaySketches day(LocalDate date) {
+        return days.computeIfAbsent(date, d -> new DaySketches());
+    }
+
+    private LocalDate oldestInMemory() {
+        return today().minusDays(memoryDays - 1L);
+    }
+
+    private static LocalDate today() {
+        return LocalDate.now(ZoneOffset.UTC);
+    }
+
+    private static final class DaySketches {
+        final Map<Long, HyperLogLog> visitors = new ConcurrentHashMap<>();
+        final CountMinSketch ipClicks = new CountMinSketch(CMS_DEPTH, CMS_WIDTH);
+        final CountMinSketch referrerIpClicks = new CountMinSketch(CMS_DEPTH, CMS_WIDTH);
+        final Set<Long> dirtyReferrers = ConcurrentHashMap.newKeySet();
+        final Set<String> flaggedIps = ConcurrentHashMap.newKeySet();
+        final Set<SuspiciousIp> pendingFlags = ConcurrentHashMap.newKeySet();
+        volatile boolean countersDirty;
+    }
+}
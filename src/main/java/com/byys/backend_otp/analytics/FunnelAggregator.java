@@ -0,0 +1,195 @@
+package com.byys.backend_otp.analytics;
+
+import com.byys.backend_otp.referral.ReferralEventRecorded;
+import com.byys.backend_otp.referral.ReferralEventType;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streaming funnel counters. Every accepted referral event is counted once, as it is recorded,
+ * into an hourly (referrer, source, stage) counter; deltas are added to
+ * {@code referral_funnel_hourly} every few seconds. Reports sum the hourly rows of a window plus
+ * whatever this instance has not flushed yet, so windows resolve to whole UTC hours. SIGNUP and
+ * VERIFICATION take the source of the share link the member registered from, as stored on the
+ * sign-up claim; conversions recorded before that was stored count under no source.
+ */
+@Service
+@Slf4j
+public class FunnelAggregator {
+
+    private static final int MAX_SOURCE_LENGTH = 64;
+
+    private static final String ADD_SQL =
+            "INSERT INTO referral_funnel_hourly (bucket_start, referrer_user_id, referral_source, event_type, event_count) " +
+            "VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (bucket_start, referrer_user_id, referral_source, event_type) " +
+            "DO UPDATE SET event_count = referral_funnel_hourly.event_count + EXCLUDED.event_count";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<CounterKey, LongAdder> pending = new ConcurrentHashMap<>();
+
+    public FunnelAggregator(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReferralEvent(ReferralEventRecorded event) {
+        Instant occurredAt = event.occurredAt() != null ? event.occurredAt() : Instant.now();
+        CounterKey key = new CounterKey(occurredAt.truncatedTo(ChronoUnit.HOURS), event.referrerUserId(),
+                normalizeSource(event.referralSource()), event.eventType());
+        if (!key.bucketStart().isBefore(Instant.now().truncatedTo(ChronoUnit.HOURS))) {
+            // Current hour: flush drops a bucket only once it is more than an hour old
+            pending.computeIfAbsent(key, k -> new LongAdder()).increment();
+        } else {
+            // Late event for a bucket flush may be draining and removing; counted under the same bin lock
+            pending.compute(key, (k, adder) -> {
+                LongAdder counter = adder != null ? adder : new LongAdder();
+                counter.increment();
+                return counter;
+            });
+        }
+    }
+
+    public FunnelReport funnel(Long referrerUserId, String source, Instant from, Instant to) {
+        Instant start = from.truncatedTo(ChronoUnit.HOURS);
+        Instant end = ceilHour(to);
+        String normalizedSource = source != null ? normalizeSource(source) : null;
+
+        StringBuilder sql = new StringBuilder("SELECT event_type, SUM(event_count) AS events FROM referral_funnel_hourly " +
+                "WHERE bucket_start >= ? AND bucket_start < ?");
+        List<Object> args = new ArrayList<>(List.of(Timestamp.from(start), Timestamp.from(end)));
+        if (referrerUserId != null) {
+            sql.append(" AND referrer_user_id = ?");
+            args.add(referrerUserId);
+        }
+        if (normalizedSource != null) {
+            sql.append(" AND referral_source = ?");
+            args.add(normalizedSource);
+        }
+        sql.append(" GROUP BY event_type");
+
+        Map<ReferralEventType, Long> counts = new EnumMap<>(ReferralEventType.class);
+        jdbcTemplate.query(sql.toString(), rs -> {
+            counts.merge(ReferralEventType.valueOf(rs.getString("event_type")), rs.getLong("events"), Long::sum);
+        }, args.toArray());
+        pending.forEach((key, adder) -> {
+            if (key.matches(start, end, referrerUserId, normalizedSource)) {
+                counts.merge(key.eventType(), adder.sum(), Long::sum);
+            }
+        });
+        return FunnelReport.of(start, end, referrerUserId, displaySource(normalizedSource), counts);
+    }
+
+    /** One report per source seen in the window, optionally restricted to one referrer. */
+    public List<FunnelReport> funnelBySource(Long referrerUserId, Instant from, Instant to) {
+        Instant start = from.truncatedTo(ChronoUnit.HOURS);
+        Instant end = ceilHour(to);
+
+        String sql = "SELECT referral_source, event_type, SUM(event_count) AS events FROM referral_funnel_hourly " +
+                "WHERE bucket_start >= ? AND bucket_start < ?" +
+                (referrerUserId != null ? " AND referrer_user_id = ?" : "") +
+                " GROUP BY referral_source, event_type";
+        Object[] args = referrerUserId != null
+                ? new Object[]{Timestamp.from(start), Timestamp.from(end), referrerUserId}
+                : new Object[]{Timestamp.from(start), Timestamp.from(end)};
+
+        Map<String, Map<ReferralEventType, Long>> bySource = new TreeMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            bySource.computeIfAbsent(rs.getString("referral_source"), s -> new EnumMap<>(ReferralEventType.class))
+                    .merge(ReferralEventType.valueOf(rs.getString("event_type")), rs.getLong("events"), Long::sum);
+        }, args);
+        pending.forEach((key, adder) -> {
+            if (key.matches(start, end, referrerUserId, null)) {
+                bySource.computeIfAbsent(key.source(), s -> new EnumMap<>(ReferralEventType.class))
+                        .merge(key.eventType(), adder.sum(), Long::sum);
+            }
+        });
+
+        List<FunnelReport> reports = new ArrayList<>();
+        bySource.forEach((source, counts) ->
+                reports.add(FunnelReport.of(start, end, referrerUserId, displaySource(source), counts)));
+        return reports;
+    }
+
+    @Scheduled(initialDelayString = "${referral.funnel.flush-interval:PT10S}",
+            fixedDelayString = "${referral.funnel.flush-interval:PT10S}")
+    public void flush() {
+        Instant staleBefore = Instant.now().truncatedTo(ChronoUnit.HOURS).minus(1, ChronoUnit.HOURS);
+        Map<CounterKey, Long> deltas = new HashMap<>();
+        for (CounterKey key : pending.keySet()) {
+            // Drained and, once stale, removed in one step, so no increment lands on a removed counter
+            pending.computeIfPresent(key, (k, adder) -> {
+                long delta = adder.sumThenReset();
+                if (delta != 0) {
+                    deltas.put(k, delta);
+                }
+                return k.bucketStart().isBefore(staleBefore) ? null : adder;
+            });
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        deltas.forEach((key, delta) -> rows.add(new Object[]{
+                Timestamp.from(key.bucketStart()), key.referrerUserId(), key.source(), key.eventType().name(), delta}));
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(ADD_SQL, rows));
+        } catch (RuntimeException e) {
+            // Put the deltas back so the next flush retries them
+            deltas.forEach((key, delta) -> pending.computeIfAbsent(key, k -> new LongAdder()).add(delta));
+            log.error("Funnel counter flush failed for {} buckets", rows.size(), e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    static String normalizeSource(String source) {
+        if (source == null || source.isBlank()) {
+            return "";
+        }
+        String normalized = source.trim().toUpperCase(Locale.ROOT);
+        return normalized.length() > MAX_SOURCE_LENGTH ? normalized.substring(0, MAX_SOURCE_LENGTH) : normalized;
+    }
+
+    private static String displaySource(String source) {
+        return source == null || source.isEmpty() ? null : source;
+    }
+
+    private static Instant ceilHour(Instant instant) {
+        Instant floor = instant.truncatedTo(ChronoUnit.HOURS);
+        return floor.equals(instant) ? floor : floor.plus(1, ChronoUnit.HOURS);
+    }
+
+    private record CounterKey(Instant bucketStart, Long referrerUserId, String source, ReferralEventType eventType) {
+
+        boolean matches(Instant start, Instant end, Long referrerFilter, String sourceFilter) {
+            return !bucketStart.isBefore(start) && bucketStart.isBefore(end)
+                    && (referrerFilter == null || referrerFilter.equals(referrerUserId))
+                    && (sourceFilter == null || sourceFilter.equals(source));
+        }
+    }
+}
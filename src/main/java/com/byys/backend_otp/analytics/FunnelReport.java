@@ -0,0 +1,27 @@
+package com.byys.backend_otp.analytics;
+
+import com.byys.backend_otp.referral.ReferralEventType;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stage-to-stage conversion over {@code [from, to)}. {@code referrerUserId} and {@code source} are
+ * null when the report is not restricted to one referrer or source.
+ */
+public record FunnelReport(Instant from, Instant to, Long referrerUserId, String source, List<FunnelStage> stages) {
+
+    static FunnelReport of(Instant from, Instant to, Long referrerUserId, String source, Map<ReferralEventType, Long> counts) {
+        List<FunnelStage> stages = new ArrayList<>();
+        Long previous = null;
+        for (ReferralEventType type : ReferralEventType.values()) {
+            long count = counts.getOrDefault(type, 0L);
+            double rate = previous == null ? 100.0 : previous > 0 ? count * 100.0 / previous : 0;
+            stages.add(new FunnelStage(type, count, rate));
+            previous = count;
+        }
+        return new FunnelReport(from, to, referrerUserId, source, stages);
+    }
+}
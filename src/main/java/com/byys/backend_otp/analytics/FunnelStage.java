@@ -0,0 +1,7 @@
+package com.byys.backend_otp.analytics;
+
+import com.byys.backend_otp.referral.ReferralEventType;
+
+/** One funnel stage; {@code conversionRate} is the percentage of the previous stage that reached it. */
+public record FunnelStage(ReferralEventType stage, long count, double conversionRate) {
+}
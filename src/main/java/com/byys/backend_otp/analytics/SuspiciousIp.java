@@ -0,0 +1,11 @@
+package com.byys.backend_otp.analytics;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * An IP whose clicks on one day crossed a threshold. {@code referrerUserId} is set when the spike
+ * was against a single referrer's link, and null when it was spread across referrers.
+ */
+public record SuspiciousIp(LocalDate day, String ipAddress, Long referrerUserId, long clickEstimate, Instant flaggedAt) {
+}
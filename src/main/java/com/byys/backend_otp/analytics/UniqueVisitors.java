@@ -0,0 +1,8 @@
+package com.byys.backend_otp.analytics;
+
+import java.time.LocalDate;
+import java.util.SortedMap;
+
+/** Estimated distinct clickers per day, and across the whole range (not the sum of the days). */
+public record UniqueVisitors(LocalDate from, LocalDate to, long total, SortedMap<LocalDate, Long> daily) {
+}
@@ -1,7 +1,16 @@
 package com.byys.backend_otp.auth;
 
+import com.byys.backend_otp.analytics.ClickSketchService;
+import com.byys.backend_otp.analytics.FunnelAggregator;
+import com.byys.backend_otp.analytics.FunnelReport;
+import com.byys.backend_otp.analytics.SuspiciousIp;
+import com.byys.backend_otp.dto.CursorPage;
+import com.byys.backend_otp.export.ExportFormat;
+import com.byys.backend_otp.export.ExportService;
+import com.byys.backend_otp.referral.ReferralEventType;
 import com.byys.backend_otp.service.EmailService;
 import com.byys.backend_otp.user.*;
+import com.byys.backend_otp.util.KeysetCursor;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Future;
 import jakarta.validation.constraints.Min;
@@ -9,9 +18,13 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.transaction.annotation.Transactional;
@@ -21,10 +34,21 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.BiConsumer;
+import java.util.zip.GZIPOutputStream;
 import java.util.Map;
 
 @RestController
@@ -38,6 +62,9 @@ public class AdminContoller {
     private final EmailService emailService;
     private final UserProfileRepository userProfileRepository;
     private final TaskRepository taskRepository;
+    private final ClickSketchService clickSketchService;
+    private final FunnelAggregator funnelAggregator;
+    private final ExportService exportService;
 
     public record TaskRequest(
             @NotBlank(message = "Title is required")
@@ -59,11 +86,33 @@ public class AdminContoller {
     ) {}
 
     @GetMapping("/office-bearer-applications")
-    public ResponseEntity<Page<OfficeBearerApplication>> getApplications(
+    public ResponseEntity<?> getApplications(
             @RequestParam(defaultValue = "false") Boolean approved,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal
     ) {
+        if (cursor != null) {
+            int pageSize = CursorPage.clampSize(size);
+            List<OfficeBearerApplication> rows;
+            if (cursor.isEmpty()) {
+                rows = officeBearerAppRepository.findByApprovedOrderByAppliedAtDescIdDesc(approved, Limit.of(pageSize + 1));
+            } else {
+                KeysetCursor after;
+                try {
+                    after = KeysetCursor.decode(cursor);
+                } catch (IllegalArgumentException e) {
+                    return ResponseEntity.badRequest().body(e.getMessage());
+                }
+                rows = officeBearerAppRepository.findByApprovedBefore(
+                        approved, after.localTimestamp(), after.id(), Limit.of(pageSize + 1));
+            }
+            Long total = includeTotal ? officeBearerAppRepository.countByApproved(approved) : null;
+            return ResponseEntity.ok(CursorPage.of(rows, pageSize,
+                    application -> KeysetCursor.of(application.getAppliedAt(), application.getId()), total));
+        }
+
         Pageable pageable = PageRequest.of(page, size);
         Page<OfficeBearerApplication> applications;
 
@@ -77,10 +126,31 @@ public class AdminContoller {
     }
 
     @GetMapping("/all-task")
-    public ResponseEntity<Page<Task>> getAllTask(
+    public ResponseEntity<?> getAllTask(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "10") int size
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal
     ) {
+        if (cursor != null) {
+            int pageSize = CursorPage.clampSize(size);
+            List<Task> rows;
+            if (cursor.isEmpty()) {
+                rows = taskRepository.findAllByOrderByCreatedAtDescIdDesc(Limit.of(pageSize + 1));
+            } else {
+                KeysetCursor after;
+                try {
+                    after = KeysetCursor.decode(cursor);
+                } catch (IllegalArgumentException e) {
+                    return ResponseEntity.badRequest().body(e.getMessage());
+                }
+                rows = taskRepository.findAllBefore(after.localTimestamp(), after.id(), Limit.of(pageSize + 1));
+            }
+            Long total = includeTotal ? taskRepository.count() : null;
+            return ResponseEntity.ok(CursorPage.of(rows, pageSize,
+                    task -> KeysetCursor.of(task.getCreatedAt(), task.getId()), total));
+        }
+
         Pageable pageable = PageRequest.of(page, size);
         Page<Task> applications;
 
@@ -150,4 +220,89 @@ public class AdminContoller {
 
     }
 
+    @GetMapping("/referrals/suspicious-ips")
+    public ResponseEntity<List<SuspiciousIp>> getSuspiciousIps(@RequestParam(required = false) LocalDate date) {
+        return ResponseEntity.ok(clickSketchService.suspiciousIps(date != null ? date : LocalDate.now(ZoneOffset.UTC)));
+    }
+
+    /** Global funnel, or one referrer's and/or one source's when filtered; defaults to the last 30 days. */
+    @GetMapping("/referrals/funnel")
+    public ResponseEntity<FunnelReport> getFunnel(
+            @RequestParam(required = false) Long referrerId,
+            @RequestParam(required = false) String source,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofDays(30));
+        if (!start.isBefore(end)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(funnelAggregator.funnel(referrerId, source, start, end));
+    }
+
+    @GetMapping("/referrals/funnel/sources")
+    public ResponseEntity<List<FunnelReport>> getFunnelBySource(
+            @RequestParam(required = false) Long referrerId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofDays(30));
+        if (!start.isBefore(end)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(funnelAggregator.funnelBySource(referrerId, start, end));
+    }
+
+    /** Streams referral events in {@code [from, to)} as CSV or NDJSON, gzipped when the client accepts it. */
+    @GetMapping("/export/referral-events")
+    public ResponseEntity<StreamingResponseBody> exportReferralEvents(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) ReferralEventType eventType,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : Instant.EPOCH;
+        return export("referral-events", format, acceptEncoding,
+                (out, exportFormat) -> exportService.exportReferralEvents(out, exportFormat, start, end, eventType));
+    }
+
+    @GetMapping("/export/members")
+    public ResponseEntity<StreamingResponseBody> exportMembers(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return export("members", format, acceptEncoding, exportService::exportMembers);
+    }
+
+    private ResponseEntity<StreamingResponseBody> export(String name, String format, String acceptEncoding,
+                                                         BiConsumer<OutputStream, ExportFormat> writer) {
+        ExportFormat exportFormat;
+        try {
+            exportFormat = ExportFormat.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+                writer.accept(compressed, exportFormat);
+                compressed.finish();
+            } else {
+                writer.accept(out, exportFormat);
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, exportFormat.contentType() + ";charset=UTF-8")
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(name + "-" + LocalDate.now(ZoneOffset.UTC) + "." + exportFormat.extension())
+                        .build().toString())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
 }
@@ -1,32 +1,40 @@
 package com.byys.backend_otp.auth;
 
+import com.byys.backend_otp.dashboard.MemberDashboard;
+import com.byys.backend_otp.dashboard.MemberDashboardReader;
 import com.byys.backend_otp.dto.FeedbackRequest;
 import com.byys.backend_otp.otp.OtpRateLimitException;
 import com.byys.backend_otp.otp.OtpService;
-import com.byys.backend_otp.referral.ReferralEventRepository;
-import com.byys.backend_otp.referral.ReferralEventType;
+import com.byys.backend_otp.photo.ProfilePhotoProcessor;
+import com.byys.backend_otp.photo.ProfilePhotoStaged;
+import com.byys.backend_otp.referral.ReferralCodeAllocator;
 import com.byys.backend_otp.referral.ReferralTrackingService;
+import com.byys.backend_otp.security.AuthenticatedUser;
 import com.byys.backend_otp.security.JwtService;
-import com.byys.backend_otp.sms.SmsService;
+import com.byys.backend_otp.sms.SmsDispatcher;
+import com.byys.backend_otp.user.PhotoStatus;
 import com.byys.backend_otp.user.User;
 import com.byys.backend_otp.user.UserProfile;
 import com.byys.backend_otp.user.UserProfileRepository;
+import com.byys.backend_otp.user.UserRegistered;
 import com.byys.backend_otp.user.UserRepository;
-import com.byys.backend_otp.util.ImageCompressionUtil;
 import com.byys.backend_otp.service.EmailService;
+import com.byys.backend_otp.service.WelcomeEmailRequested;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Pattern;
 import org.flywaydb.core.internal.util.StringUtils;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.validation.annotation.Validated;
@@ -38,7 +46,6 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/auth/otp")
@@ -47,15 +54,20 @@ import java.util.concurrent.CompletableFuture;
 @Slf4j
 public class AuthController {
 
+    private static final int RECENT_ACTIVITY_LIMIT = 20;
+
     private final OtpService otpService;
-    private final SmsService smsService;
+    private final SmsDispatcher smsDispatcher;
     private final JwtService jwtService;
     private final UserRepository userRepository;
+    private final MemberDashboardReader memberDashboardReader;
     private final ReferralTrackingService referralTrackingService;
-    private final ReferralEventRepository referralEventRepository;
+    private final ReferralCodeAllocator referralCodeAllocator;
     private final UserProfileRepository userProfileRepository;
     private final EmailService emailService;
+    private final ProfilePhotoProcessor profilePhotoProcessor;
     private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
 
     public record SendOtpRequest(@NotBlank @Pattern(regexp = "^\\+[1-9]\\d{1,14}$") String phone) {
     }
@@ -80,6 +92,8 @@ public class AuthController {
             @NotBlank String institutionName,
             @NotBlank String institutionAddress,
             String referralCode,
+            // The source parameter of the share link the member arrived from
+            String referralSource,
             MultipartFile photo
     ) {
     }
@@ -102,8 +116,9 @@ public class AuthController {
                 User user = new User();
                 user.setPhone(request.phone());
                 user.setFullName(request.fullName());
-                user.setReferralCode(generateUniqueReferralCode());
+                user.setReferralCode(referralCodeAllocator.next());
                 user = userRepository.save(user);
+                eventPublisher.publishEvent(new UserRegistered(user.getId(), user.getReferralCode()));
 
                 // Create profile
                 UserProfile profile = new UserProfile();
@@ -119,14 +134,10 @@ public class AuthController {
                 profile.setInstitutionName(request.institutionName());
                 profile.setInstitutionAddress(request.institutionAddress());
 
-                // Handle photo upload
-                if (photo != null && !photo.isEmpty()) {
-                    try {
-                        String photoPath = ImageCompressionUtil.compressAndSave(photo);
-                        profile.setPhotoPath(photoPath);
-                    } catch (IOException e) {
-                        log.warn("Photo compression produces an error");
-                    }
+                boolean hasPhoto = photo != null && !photo.isEmpty();
+                if (hasPhoto) {
+                    profile.setPhotoStatus(PhotoStatus.PENDING);
+                    profile.setPhotoStagedAt(Instant.now());
                 }
                 // Generate membership ID
                 String membershipId = "BYVS" + String.format("%08d", user.getId());
@@ -134,41 +145,43 @@ public class AuthController {
                 profile.setJoinedAt(LocalDateTime.now());
                 userProfileRepository.save(profile);
 
+                // Handle photo upload: only staged here, compressed in the background after commit
+                if (hasPhoto) {
+                    try {
+                        profilePhotoProcessor.stage(profile.getId(), photo);
+                        eventPublisher.publishEvent(new ProfilePhotoStaged(profile.getId()));
+                    } catch (IOException e) {
+                        log.warn("Staging profile photo failed", e);
+                        profile.setPhotoStatus(PhotoStatus.FAILED);
+                    }
+                }
+
                 // Handle referral if exists
                 if (StringUtils.hasText(request.referralCode())) {
-                    User finalUser = user;
-                    userRepository.findByReferralCode(request.referralCode())
-                            .filter(referrer -> !referrer.getId().equals(finalUser.getId())) // Prevent self-referral
-                            .ifPresent(referrer -> {
-                                finalUser.setReferredByCode(request.referralCode());
-                                referralTrackingService.trackSignupEvent(finalUser.getId(), request.referralCode());
-                            });
+                    if (referralTrackingService.trackSignupEvent(user.getId(), request.referralCode(), request.referralSource())) {
+                        user.setReferredByCode(request.referralCode());
+                    } else {
+                        log.info("Registration for user {} used unknown referral code {}", user.getId(), request.referralCode());
+                    }
                 }
 
 
-                // Send welcome email
-                CompletableFuture.runAsync(() -> {
-                    try {
-                        emailService.sendWelcomeEmail(
-                                request.email(),
-                                request.fullName(),
-                                membershipId
-                        );
-                    } catch (Exception e) {
-                        log.error("Email sending failed", e);
-                    }
-                });
+                // Sent after commit by EmailService, off the request thread
+                eventPublisher.publishEvent(new WelcomeEmailRequested(request.email(), request.fullName(), membershipId));
 
                 // Generate token
-                String token = jwtService.generate(user.getPhone(), "USER");
-
+                String token = jwtService.generate(user.getId(), user.getPhone(), "USER");
+
+                Map<String, Object> body = new HashMap<>();
+                body.put("token", token);
+                body.put("membershipId", membershipId);
+                body.put("message", "Registration successful. Welcome to BYVS family!");
+                if (profile.getPhotoStatus() != null) {
+                    body.put("photoStatus", profile.getPhotoStatus());
+                }
                 return ResponseEntity.ok()
                         .header("X-Membership-ID", membershipId)
-                        .body(Map.of(
-                                "token", token,
-                                "membershipId", membershipId,
-                                "message", "Registration successful. Welcome to BYVS family!"
-                        ));
+                        .body(body);
             } catch (Exception e) {
                 status.setRollbackOnly();
                 log.error("Registration failed", e);
@@ -180,15 +193,7 @@ public class AuthController {
     @PostMapping("/api/feedback")
     public ResponseEntity<String> sendFeedback(@RequestBody FeedbackRequest request) {
         try {
-            CompletableFuture.runAsync(() -> {
-                try {
-                    emailService.sendFeedback(
-                            request
-                    );
-                } catch (Exception e) {
-                    log.error("Email sending failed", e);
-                }
-            });
+            emailService.sendFeedback(request);
             return ResponseEntity.ok("Feedback sent successfully!");
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body("Failed to send feedback.");
@@ -196,17 +201,31 @@ public class AuthController {
     }
 
     @PostMapping("/send")
-    public ResponseEntity<?> sendOtp(@Valid @RequestBody SendOtpRequest request) {
+    public ResponseEntity<?> sendOtp(@Valid @RequestBody SendOtpRequest request, HttpServletRequest httpRequest) {
+        // Refuse before issuing a code so an SMS outage does not use up the caller's rate limit
+        if (!smsDispatcher.isAccepting()) {
+            return smsUnavailable();
+        }
         try {
-            String otp = otpService.generateAndStore(request.phone());
+            String otp = otpService.generateAndStore(request.phone(), httpRequest.getRemoteAddr());
             String message = "Your OTP for ReferralApp is " + otp + ". Valid for 5 minutes.";
-            smsService.sendOtp(request.phone(), message);
+            if (!smsDispatcher.dispatch(request.phone(), message)) {
+                return smsUnavailable();
+            }
             return ResponseEntity.accepted().build();
         } catch (OtpRateLimitException e) {
-            return ResponseEntity.status(429).body(e.getMessage());
+            return ResponseEntity.status(429)
+                    .header(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, e.getRetryAfter().toSeconds())))
+                    .body(e.getMessage());
         }
     }
 
+    private ResponseEntity<?> smsUnavailable() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, smsDispatcher.retryAfter().toSeconds())))
+                .body("SMS delivery is temporarily unavailable. Please try again shortly.");
+    }
+
     @PostMapping("/verify")
     @Transactional
     public ResponseEntity<?> verifyOtp(@Valid @RequestBody VerifyOtpRequest request) {
@@ -231,7 +250,7 @@ public class AuthController {
 
         String role = isAdminUser(user.getPhone()) ? "ADMIN" : "USER";
 
-        String token = jwtService.generate(user.getPhone(), role);
+        String token = jwtService.generate(user.getId(), user.getPhone(), role);
         return ResponseEntity.ok()
                 .header("X-User-Role", role) // Add role to header
                 .body(new TokenResponse(token));
@@ -247,60 +266,44 @@ public class AuthController {
     public record TokenResponse(String token) {
     }
 
-    private String generateUniqueReferralCode() {
-        String code;
-        do {
-            code = UUID.randomUUID().toString().replaceAll("-", "").substring(0, 8).toUpperCase();
-        } while (userRepository.existsByReferralCode(code));
-        return code;
-    }
-
     @GetMapping("/me")
-    @Transactional
-    public ResponseEntity<?> getCurrentUser(@AuthenticationPrincipal UserDetails principal) {
-        if (principal == null || principal.getUsername() == null) {
+    public ResponseEntity<?> getCurrentUser(@AuthenticationPrincipal AuthenticatedUser principal) {
+        if (principal == null || principal.userId() == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Authentication required"));
         }
 
-        // Get user
-        User user = userRepository.findByPhone(principal.getUsername())
+        // User, profile, counts and recent activity in one query
+        MemberDashboard dashboard = memberDashboardReader.find(principal.userId(), RECENT_ACTIVITY_LIMIT)
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        long userId = user.getId();
-
-        // Get user profile with null check
-        UserProfile profile = userProfileRepository.findByUserId(userId)
-                .orElse(new UserProfile()); // Return empty profile if not found
-
-        String role = isAdminUser(user.getPhone()) ? "ADMIN" : "USER";
+        String role = principal.role() != null ? principal.role() : "USER";
 
         // Build response with null checks
         Map<String, Object> response = new HashMap<>();
-        response.put("userId", user.getId());
-        response.put("fullName", user.getFullName() != null ? user.getFullName() : "");
-        response.put("phone", user.getPhone() != null ? user.getPhone() : "");
-        response.put("referralCode", user.getReferralCode() != null ? user.getReferralCode() : "");
-        response.put("verifiedReferrals", referralEventRepository.countByReferrerUserIdAndEventType(
-                user.getId(), ReferralEventType.VERIFICATION));
+        response.put("userId", dashboard.userId());
+        response.put("fullName", dashboard.fullName() != null ? dashboard.fullName() : "");
+        response.put("phone", dashboard.phone() != null ? dashboard.phone() : "");
+        response.put("referralCode", dashboard.referralCode() != null ? dashboard.referralCode() : "");
+        response.put("verifiedReferrals", dashboard.verifiedReferrals());
+        response.put("signupReferrals", dashboard.signupReferrals());
+        response.put("recentActivity", dashboard.recentActivity());
 
         // Handle profile fields
-        response.put("state", profile.getState() != null ? profile.getState() : "");
-        response.put("district", profile.getDistrict() != null ? profile.getDistrict() : "");
+        response.put("state", dashboard.state() != null ? dashboard.state() : "");
+        response.put("district", dashboard.district() != null ? dashboard.district() : "");
 
-        if (profile.getJoinedAt() != null) {
-            response.put("joinedDate", profile.getJoinedAt().atZone(ZoneId.systemDefault()).toLocalDate().toString());
+        if (dashboard.joinedAt() != null) {
+            response.put("joinedDate", dashboard.joinedAt().atZone(ZoneId.systemDefault()).toLocalDate().toString());
         } else {
             response.put("joinedDate", "");
         }
 
-        response.put("membershipId", profile.getMembershipId() != null ? profile.getMembershipId() : "");
-        response.put("email", profile.getEmail() != null ? profile.getEmail() : "");
+        response.put("membershipId", dashboard.membershipId() != null ? dashboard.membershipId() : "");
+        response.put("email", dashboard.email() != null ? dashboard.email() : "");
 
         return ResponseEntity.ok()
                 .header("X-User-Role", role)
                 .body(response);
-
-
     }
 
     private boolean isAdminUser(String username) {
@@ -1,16 +1,18 @@
 package com.byys.backend_otp.auth;
 
+import com.byys.backend_otp.photo.PhotoController;
+import com.byys.backend_otp.security.AuthenticatedUser;
 import com.byys.backend_otp.user.*;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.Map;
 
 // MembershipController.java
@@ -21,47 +23,69 @@ public class MembershipController {
 
     private final UserProfileRepository userProfileRepository;
     private final UserRepository userRepository;
+    private final UserCache userCache;
     private final OfficeBearerRepository officeBearerAppRepository;
     @GetMapping("/id-card")
     public ResponseEntity<Map<String, Object>> getIdCardData(
-            @AuthenticationPrincipal UserDetails userDetails
+            @AuthenticationPrincipal AuthenticatedUser principal
     ) {
-        User user = userRepository.findByPhone(userDetails.getUsername())
+        CachedUser user = userCache.get(principal.userId())
                 .orElseThrow(() -> new RuntimeException("User not found"));
+        // Only the id is needed for the queries below, so no row is loaded
+        User userRef = userRepository.getReferenceById(user.id());
 
-        UserProfile profile = userProfileRepository.findByUser(user)
+        UserProfile profile = userProfileRepository.findByUser(userRef)
                 .orElseThrow(() -> new RuntimeException("Profile not found"));
 
-        String membershipId = "BYVS" + String.format("%08d", user.getId());
+        String membershipId = "BYVS" + String.format("%08d", user.id());
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
 
-        return ResponseEntity.ok(Map.of(
-                "membershipId", membershipId,
-                "fullName", user.getFullName(),
-                "photoPath", profile.getPhotoPath(),
-                "district", profile.getDistrict(),
-                "state", profile.getState(),
-                "joinDate", user.getCreatedAt().atZone(ZoneId.systemDefault()).toLocalDate().toString(),
-                "isOfficeBearer", officeBearerAppRepository.existsByUserAndApprovedTrue(user)
-        ));
+        // HashMap rather than Map.of: members without a photo have null photo fields
+        Map<String, Object> body = new HashMap<>();
+        body.put("membershipId", membershipId);
+        body.put("fullName", user.fullName());
+        body.put("photoPath", profile.getPhotoPath());
+        body.put("photoUrl", PhotoController.urlFor(profile.getPhotoKey()));
+        body.put("district", profile.getDistrict());
+        body.put("state", profile.getState());
+        body.put("joinDate", user.createdAt().atZone(ZoneId.systemDefault()).toLocalDate().toString());
+        body.put("isOfficeBearer", officeBearerAppRepository.existsByUserAndApprovedTrue(userRef));
+        return ResponseEntity.ok(body);
     }
 
     @GetMapping("/certificate")
     public ResponseEntity<Map<String, Object>> getCertificateData(
-            @AuthenticationPrincipal UserDetails userDetails
+            @AuthenticationPrincipal AuthenticatedUser principal
     ) {
-        User user = userRepository.findByPhone(userDetails.getUsername())
+        CachedUser user = userCache.get(principal.userId())
                 .orElseThrow(() -> new RuntimeException("User not found"));
+        // Only the id is needed for the queries below, so no row is loaded
+        User userRef = userRepository.getReferenceById(user.id());
 
-        OfficeBearerApplication application = officeBearerAppRepository.findByUserAndApprovedTrue(user)
+        OfficeBearerApplication application = officeBearerAppRepository.findByUserAndApprovedTrue(userRef)
                 .orElseThrow(() -> new RuntimeException("Not an office bearer"));
 
         return ResponseEntity.ok(Map.of(
-                "fullName", user.getFullName(),
+                "fullName", user.fullName(),
                 "district", application.getDistrict(),
                 "state", application.getState(),
                 "approvalDate", application.getApprovedAt().toLocalDate().toString(),
                 "socialWork", application.getSocialWorkDescription()
         ));
     }
-}
\ No newline at end of file
+
+    /** Poll after registration: PENDING until the uploaded photo has been compressed, then READY or FAILED. */
+    @GetMapping("/photo-status")
+    public ResponseEntity<Map<String, Object>> getPhotoStatus(
+            @AuthenticationPrincipal AuthenticatedUser principal
+    ) {
+        UserProfile profile = userProfileRepository.findByUserId(principal.userId())
+                .orElseThrow(() -> new RuntimeException("Profile not found"));
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("status", profile.getPhotoStatus() != null ? profile.getPhotoStatus() : "NONE");
+        body.put("photoPath", profile.getPhotoPath());
+        body.put("photoUrl", PhotoController.urlFor(profile.getPhotoKey()));
+        return ResponseEntity.ok(body);
+    }
+}
@@ -1,5 +1,6 @@
 package com.byys.backend_otp.auth;
 
+import com.byys.backend_otp.security.AuthenticatedUser;
 import com.byys.backend_otp.user.*;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
@@ -8,7 +9,6 @@ import jakarta.validation.constraints.Size;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 import java.time.LocalDateTime;
@@ -45,11 +45,11 @@ public class OfficeBearerController {
     @PostMapping("/apply")
     @Transactional
     public ResponseEntity<?> apply(
-            @AuthenticationPrincipal UserDetails userDetails,
+            @AuthenticationPrincipal AuthenticatedUser principal,
             @RequestBody @Valid OfficeBearerRequest request
     ) {
-        User user = userRepository.findByPhone(userDetails.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        // A reference is enough: the user is only used as a query parameter or association
+        User user = userRepository.getReferenceById(principal.userId());
 
         // Check if already applied
         if (appRepository.existsByUserAndApprovedFalse(user)) {
@@ -81,8 +81,9 @@ public class OfficeBearerController {
     }
 
     @GetMapping("/status")
-    public ResponseEntity<?> getStatus(@AuthenticationPrincipal UserDetails userDetails) {
-        User user = userRepository.findByPhone(userDetails.getUsername())
+    public ResponseEntity<?> getStatus(@AuthenticationPrincipal AuthenticatedUser principal) {
+        // Loaded rather than referenced: the application, and with it the user, is serialized below
+        User user = userRepository.findById(principal.userId())
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
         Optional<OfficeBearerApplication> application = appRepository.findByUser(user);
@@ -98,8 +99,8 @@ public class OfficeBearerController {
     }
 
     @GetMapping("/get-tasks")
-    public ResponseEntity<List<Task>> getTheTask(@AuthenticationPrincipal UserDetails principal){
-        User user = userRepository.findByPhone(principal.getUsername()).orElseThrow(() -> new RuntimeException("User not found"));
+    public ResponseEntity<List<Task>> getTheTask(@AuthenticationPrincipal AuthenticatedUser principal){
+        User user = userRepository.findById(principal.userId()).orElseThrow(() -> new RuntimeException("User not found"));
         List<Task> tasks = taskRepository.findByAssignedTo(user);
         return ResponseEntity.ok(tasks);
     }
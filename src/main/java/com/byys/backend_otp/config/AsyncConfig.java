@@ -1,15 +1,47 @@
 package com.byys.backend_otp.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
 
+/**
+ * Executor behind {@code @Async}. With {@code spring.threads.virtual.enabled} every task gets its own
+ * virtual thread, and at most {@code async.virtual.concurrency-limit} of them run at once so a burst
+ * cannot open more SMTP connections than the mail server accepts; otherwise the original bounded
+ * platform pool is used.
+ */
 @Configuration
 public class AsyncConfig {
 
     @Bean(name = "taskExecutor")
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    public Executor virtualTaskExecutor(@Value("${async.virtual.concurrency-limit:64}") int concurrencyLimit) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("EmailThread-");
+        executor.setVirtualThreads(true);
+        // Not setConcurrencyLimit: that blocks the submitting thread once the limit is reached. The
+        // permit is taken inside the task instead, so submission never waits and excess tasks park
+        // on their own virtual threads.
+        Semaphore permits = new Semaphore(concurrencyLimit);
+        executor.setTaskDecorator(task -> () -> {
+            permits.acquireUninterruptibly();
+            try {
+                task.run();
+            } finally {
+                permits.release();
+            }
+        });
+        return executor;
+    }
+
+    @Bean(name = "taskExecutor")
+    @ConditionalOnThreading(Threading.PLATFORM)
     public Executor taskExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(5);
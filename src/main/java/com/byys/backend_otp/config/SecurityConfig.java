@@ -32,6 +32,9 @@ public class SecurityConfig {
                 .requestMatchers(HttpMethod.POST, "/auth/otp/send", "/auth/otp/verify", "/auth/otp/**").permitAll()
                     .requestMatchers(HttpMethod.GET, "/auth/otp/check-user").permitAll()
                     .requestMatchers(HttpMethod.GET,"/referrals/leaderboard/daily","/referrals/leaderboard/weekly","/referrals/leaderboard/monthly").permitAll()
+                    .requestMatchers(HttpMethod.GET, "/referrals/leaderboard/*/stream").permitAll()
+                    // Keys are content hashes, so a photo URL cannot be guessed
+                    .requestMatchers(HttpMethod.GET, "/photos/**").permitAll()
                 .anyRequest().authenticated()
             )
             .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
@@ -0,0 +1,25 @@
+package com.byys.backend_otp.dashboard;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/** Everything the member dashboard shows, read in one statement by {@link MemberDashboardReader}. */
+public record MemberDashboard(
+        Long userId,
+        String phone,
+        String fullName,
+        String referralCode,
+        long verifiedReferrals,
+        long signupReferrals,
+        String state,
+        String district,
+        String email,
+        String membershipId,
+        LocalDateTime joinedAt,
+        List<RecentActivity> recentActivity
+) {
+
+    public record RecentActivity(String eventType, Instant occurredAt) {
+    }
+}
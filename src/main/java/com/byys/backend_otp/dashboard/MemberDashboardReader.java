@@ -0,0 +1,88 @@
+package com.byys.backend_otp.dashboard;
+
+import com.byys.backend_otp.user.UserCounter;
+import com.byys.backend_otp.user.UserCounterBuffer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Read model for the member dashboard: user, profile, referral counters and the latest events in a
+ * single statement. Counts come from the maintained counter columns plus the deltas still waiting
+ * in {@link UserCounterBuffer}; recent activity is aggregated to JSON in the database and walks the
+ * (referrer_user_id, occurred_at, id) index.
+ */
+@Component
+public class MemberDashboardReader {
+
+    private static final String DASHBOARD_SQL = """
+            SELECT u.id, u.phone, u.full_name, u.referral_code,
+                   u.verified_referrals_count, u.referral_signups_count,
+                   p.state, p.district, p.email, p.membership_id, p.joined_at,
+                   (SELECT COALESCE(json_agg(json_build_object('eventType', e.event_type,
+                                                      'occurredAt', to_char(e.occurred_at AT TIME ZONE 'UTC', 'YYYY-MM-DD"T"HH24:MI:SS.US"Z"'))
+                                    ORDER BY e.occurred_at DESC, e.id DESC), '[]')
+                      FROM (SELECT event_type, occurred_at, id
+                              FROM referral_events
+                             WHERE referrer_user_id = u.id
+                             ORDER BY occurred_at DESC, id DESC
+                             LIMIT ?) e) AS recent_activity
+              FROM app_user u
+              LEFT JOIN user_profile p ON p.user_id = u.id
+             WHERE u.id = ?
+            """;
+    private static final TypeReference<List<MemberDashboard.RecentActivity>> ACTIVITY_LIST = new TypeReference<>() {
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserCounterBuffer userCounterBuffer;
+    private final ObjectMapper objectMapper;
+
+    public MemberDashboardReader(JdbcTemplate jdbcTemplate, UserCounterBuffer userCounterBuffer, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userCounterBuffer = userCounterBuffer;
+        this.objectMapper = objectMapper;
+    }
+
+    public Optional<MemberDashboard> find(Long userId, int recentLimit) {
+        List<MemberDashboard> rows = jdbcTemplate.query(DASHBOARD_SQL, this::mapRow, recentLimit, userId);
+        return rows.stream().findFirst();
+    }
+
+    private MemberDashboard mapRow(ResultSet rs, int rowNum) throws SQLException {
+        long userId = rs.getLong("id");
+        Timestamp joinedAt = rs.getTimestamp("joined_at");
+        return new MemberDashboard(
+                userId,
+                rs.getString("phone"),
+                rs.getString("full_name"),
+                rs.getString("referral_code"),
+                rs.getLong("verified_referrals_count") + userCounterBuffer.pending(userId, UserCounter.VERIFIED_REFERRALS),
+                rs.getLong("referral_signups_count") + userCounterBuffer.pending(userId, UserCounter.REFERRAL_SIGNUPS),
+                rs.getString("state"),
+                rs.getString("district"),
+                rs.getString("email"),
+                rs.getString("membership_id"),
+                joinedAt != null ? joinedAt.toLocalDateTime() : null,
+                parseActivity(rs.getString("recent_activity")));
+    }
+
+    private List<MemberDashboard.RecentActivity> parseActivity(String json) {
+        if (json == null) {
+            return List.of();
+        }
+        try {
+            return objectMapper.readValue(json, ACTIVITY_LIST);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable recent activity for dashboard", e);
+        }
+    }
+}
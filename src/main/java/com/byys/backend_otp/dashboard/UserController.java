@@ -1,13 +1,8 @@
 package com.byys.backend_otp.dashboard;
 
-import com.byys.backend_otp.referral.ReferralEvent;
-import com.byys.backend_otp.referral.ReferralEventRepository;
-import com.byys.backend_otp.user.User;
-import com.byys.backend_otp.user.UserRepository;
-import org.springframework.data.domain.PageRequest;
+import com.byys.backend_otp.security.AuthenticatedUser;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -19,30 +14,25 @@ import java.util.Map;
 @RequestMapping("/me")
 public class UserController {
 
-    private final UserRepository userRepository;
-    private final ReferralEventRepository referralEventRepository;
+    private static final int RECENT_ACTIVITY_LIMIT = 20;
 
-    public UserController(UserRepository userRepository, ReferralEventRepository referralEventRepository) {
-        this.userRepository = userRepository;
-        this.referralEventRepository = referralEventRepository;
+    private final MemberDashboardReader memberDashboardReader;
+
+    public UserController(MemberDashboardReader memberDashboardReader) {
+        this.memberDashboardReader = memberDashboardReader;
     }
 
     @GetMapping
-    public ResponseEntity<?> profile(@AuthenticationPrincipal UserDetails principal) {
-        String phone = principal.getUsername();
-        User user = userRepository.findByPhone(phone).orElseThrow();
-        long total = referralEventRepository.count(); // simplified; can refine to only conversions
+    public ResponseEntity<?> profile(@AuthenticationPrincipal AuthenticatedUser principal) {
+        MemberDashboard dashboard = memberDashboardReader.find(principal.userId(), RECENT_ACTIVITY_LIMIT).orElseThrow();
 
         Map<String, Object> dto = new HashMap<>();
-        dto.put("phone", user.getPhone());
-        dto.put("fullName", user.getFullName());
-        dto.put("referralCode", user.getReferralCode());
-        dto.put("totalReferrals", total);
-        dto.put("recentActivity", referralEventRepository
-            .findByReferrerUserIdOrderByOccurredAtDesc(user.getId(), PageRequest.of(0, 20))
-            .map(ReferralEvent::getEventType));
+        dto.put("phone", dashboard.phone());
+        dto.put("fullName", dashboard.fullName());
+        dto.put("referralCode", dashboard.referralCode());
+        dto.put("totalReferrals", dashboard.signupReferrals());
+        dto.put("verifiedReferrals", dashboard.verifiedReferrals());
+        dto.put("recentActivity", dashboard.recentActivity());
         return ResponseEntity.ok(dto);
     }
 }
-
-
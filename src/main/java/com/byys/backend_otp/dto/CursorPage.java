@@ -0,0 +1,31 @@
+package com.byys.backend_otp.dto;
+
+import com.byys.backend_otp.util.KeysetCursor;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset-paginated listing. {@code totalElements} is only populated when the client
+ * asked for it, since counting costs a separate scan.
+ */
+public record CursorPage<T>(List<T> content, String nextCursor, boolean hasNext, Long totalElements) {
+
+    /** Largest page a client can ask for. */
+    public static final int MAX_SIZE = 100;
+
+    /** Bounds a requested page size to 1..{@link #MAX_SIZE}. */
+    public static int clampSize(int size) {
+        return Math.min(Math.max(1, size), MAX_SIZE);
+    }
+
+    /**
+     * Builds a page from up to {@code size + 1} rows; the extra row only signals that another page exists.
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int size, Function<T, KeysetCursor> cursorOf, Long totalElements) {
+        boolean hasNext = rows.size() > size;
+        List<T> content = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? cursorOf.apply(content.get(content.size() - 1)).encode() : null;
+        return new CursorPage<>(content, nextCursor, hasNext, totalElements);
+    }
+}
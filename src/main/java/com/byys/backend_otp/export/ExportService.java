@@ -0,0 +1,266 @@
+package com.byys.backend_otp.export;
+
+import com.byys.backend_otp.referral.ReferralEventType;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams referral events and member profiles as CSV or NDJSON. Rows are read through a
+ * server-side cursor (a bounded fetch size inside a read-only transaction) and written to the
+ * output as they arrive, so memory stays flat however many rows are exported.
+ */
+@Service
+@Slf4j
+public class ExportService {
+
+    private static final String REFERRAL_EVENTS_SQL =
+            "SELECT id, referrer_user_id, referred_user_id, event_type, occurred_at, tracking_id, " +
+            "referral_source, ip_address, user_agent FROM referral_events " +
+            "WHERE occurred_at >= ? AND occurred_at < ?";
+
+    private static final String MEMBERS_SQL =
+            "SELECT u.id, p.membership_id, u.full_name, u.phone, p.email, p.whatsapp_number, p.age, " +
+            "p.village_town_city, p.block_name, p.district, p.state, p.profession, p.institution_name, " +
+            "u.referral_code, u.referred_by_code, u.is_verified, u.verified_referrals_count, u.created_at, p.joined_at " +
+            "FROM app_user u LEFT JOIN user_profile p ON p.user_id = u.id ORDER BY u.id";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final JdbcTemplate cursorJdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final Counter exportedRows;
+
+    public ExportService(DataSource dataSource,
+                         PlatformTransactionManager transactionManager,
+                         MeterRegistry meterRegistry,
+                         @Value("${export.fetch-size:2000}") int fetchSize) {
+        this.cursorJdbcTemplate = new JdbcTemplate(dataSource);
+        this.cursorJdbcTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.exportedRows = meterRegistry.counter("export.rows");
+    }
+
+    public long exportReferralEvents(OutputStream out, ExportFormat format, Instant from, Instant to, ReferralEventType eventType) {
+        List<Object> args = new ArrayList<>(List.of(Timestamp.from(from), Timestamp.from(to)));
+        String sql = REFERRAL_EVENTS_SQL;
+        if (eventType != null) {
+            sql += " AND event_type = ?";
+            args.add(eventType.name());
+        }
+        return export(out, format, sql + " ORDER BY occurred_at, id", args.toArray());
+    }
+
+    public long exportMembers(OutputStream out, ExportFormat format) {
+        return export(out, format, MEMBERS_SQL, new Object[0]);
+    }
+
+    private long export(OutputStream out, ExportFormat format, String sql, Object[] args) {
+        long started = System.nanoTime();
+        Long rows = readOnlyTransaction.execute(status -> {
+            try {
+                RowSink sink = format == ExportFormat.CSV ? new CsvSink(out) : new NdjsonSink(out);
+                Long count = cursorJdbcTemplate.query(sql, (ResultSetExtractor<Long>) rs -> {
+                    sink.begin(rs.getMetaData());
+                    long written = 0;
+                    while (rs.next()) {
+                        sink.row(rs);
+                        written++;
+                    }
+                    return written;
+                }, args);
+                sink.finish();
+                return count;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        long exported = rows != null ? rows : 0;
+        exportedRows.increment(exported);
+        log.info("Exported {} rows as {} in {} ms", exported, format, (System.nanoTime() - started) / 1_000_000);
+        return exported;
+    }
+
+    private interface RowSink {
+        void begin(ResultSetMetaData metaData) throws SQLException;
+
+        void row(ResultSet rs) throws SQLException;
+
+        void finish() throws IOException;
+    }
+
+    private static final class CsvSink implements RowSink {
+        private final Writer writer;
+        private int columns;
+
+        CsvSink(OutputStream out) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        }
+
+        @Override
+        public void begin(ResultSetMetaData metaData) throws SQLException {
+            columns = metaData.getColumnCount();
+            List<String> header = new ArrayList<>(columns);
+            for (int i = 1; i <= columns; i++) {
+                header.add(metaData.getColumnLabel(i));
+            }
+            write(String.join(",", header));
+        }
+
+        @Override
+        public void row(ResultSet rs) throws SQLException {
+            StringBuilder line = new StringBuilder(256);
+            for (int i = 1; i <= columns; i++) {
+                if (i > 1) {
+                    line.append(',');
+                }
+                Object value = rs.getObject(i);
+                if (value instanceof Timestamp timestamp) {
+                    line.append(timestamp.toInstant());
+                } else if (value instanceof String text) {
+                    appendText(line, text);
+                } else if (value != null) {
+                    line.append(value);
+                }
+            }
+            write(line.toString());
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+
+        private void write(String line) {
+            try {
+                writer.write(line);
+                writer.write("\r\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static void appendText(StringBuilder line, String text) {
+            // Leading formula characters are neutralised so spreadsheets do not evaluate member input
+            boolean formula = !text.isEmpty() && "=+-@\t\r".indexOf(text.charAt(0)) >= 0;
+            boolean quote = formula || text.indexOf(',') >= 0 || text.indexOf('"') >= 0
+                    || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0;
+            if (!quote) {
+                line.append(text);
+                return;
+            }
+            line.append('"');
+            if (formula) {
+                line.append('\'');
+            }
+            line.append(text.replace("\"", "\"\"")).append('"');
+        }
+    }
+
+    private final class NdjsonSink implements RowSink {
+        private final JsonGenerator generator;
+        private String[] names;
+        private int[] types;
+
+        NdjsonSink(OutputStream out) throws IOException {
+            this.generator = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void begin(ResultSetMetaData metaData) throws SQLException {
+            int columns = metaData.getColumnCount();
+            names = new String[columns];
+            types = new int[columns];
+            for (int i = 0; i < columns; i++) {
+                names[i] = metaData.getColumnLabel(i + 1);
+                types[i] = metaData.getColumnType(i + 1);
+            }
+        }
+
+        @Override
+        public void row(ResultSet rs) throws SQLException {
+            try {
+                generator.writeStartObject();
+                for (int i = 0; i < names.length; i++) {
+                    generator.writeFieldName(names[i]);
+                    writeValue(rs, i + 1, types[i]);
+                }
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+
+        private void writeValue(ResultSet rs, int column, int type) throws SQLException, IOException {
+            switch (type) {
+                case Types.BIGINT, Types.INTEGER, Types.SMALLINT -> {
+                    long value = rs.getLong(column);
+                    if (rs.wasNull()) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeNumber(value);
+                    }
+                }
+                case Types.BOOLEAN, Types.BIT -> {
+                    boolean value = rs.getBoolean(column);
+                    if (rs.wasNull()) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeBoolean(value);
+                    }
+                }
+                case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> {
+                    Timestamp value = rs.getTimestamp(column);
+                    if (value == null) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeString(value.toInstant().toString());
+                    }
+                }
+                default -> {
+                    String value = rs.getString(column);
+                    if (value == null) {
+                        generator.writeNull();
+                    } else {
+                        generator.writeString(value);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.byys.backend_otp.leaderboard;
+
+import com.byys.backend_otp.referral.ReferralEventRecorded;
+import com.byys.backend_otp.referral.ReferralEventType;
+import com.byys.backend_otp.referral.ReferralRollupService;
+import com.byys.backend_otp.referral.ReferrerWindowStats;
+import com.byys.backend_otp.user.UserRepository;
+import com.byys.backend_otp.user.UserSummary;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps the daily, weekly and monthly leaderboards in memory. Boards are rebuilt from the
+ * referral rollups at startup and then updated from committed signup and verification
+ * events, so serving a page never touches the database except to resolve unknown member names.
+ */
+@Service
+@Slf4j
+public class LeaderboardEngine {
+
+    // verifications desc, signups desc, userId asc
+    private static final Comparator<Standing> ORDER = Comparator
+            .comparingLong(Standing::verifications).reversed()
+            .thenComparing(Comparator.comparingLong(Standing::signups).reversed())
+            .thenComparingLong(Standing::userId);
+
+    private final ReferralRollupService referralRollupService;
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Clock clock;
+    private final Map<LeaderboardWindow, Board> boards = new EnumMap<>(LeaderboardWindow.class);
+    private final Map<Long, Member> members = new ConcurrentHashMap<>();
+
+    public LeaderboardEngine(ReferralRollupService referralRollupService,
+                             UserRepository userRepository,
+                             ApplicationEventPublisher eventPublisher) {
+        this.referralRollupService = referralRollupService;
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.clock = Clock.systemUTC();
+        for (LeaderboardWindow window : LeaderboardWindow.values()) {
+            boards.put(window, new Board());
+        }
+    }
+
+    @PostConstruct
+    void rebuild() {
+        Instant now = clock.instant();
+        Set<Long> referrers = new HashSet<>();
+        for (LeaderboardWindow window : LeaderboardWindow.values()) {
+            Instant start = window.start(now);
+            List<ReferrerWindowStats> stats = referralRollupService.windowStats(start, window.end(now));
+            boards.get(window).reset(start, stats);
+            stats.forEach(s -> referrers.add(s.referrerUserId()));
+        }
+        loadMembers(referrers);
+        log.info("Leaderboards rebuilt with {} referrers", referrers.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReferralEvent(ReferralEventRecorded event) {
+        if (event.eventType() != ReferralEventType.SIGNUP
+                && event.eventType() != ReferralEventType.VERIFICATION) {
+            return;
+        }
+        Instant now = clock.instant();
+        Set<LeaderboardWindow> changed = EnumSet.noneOf(LeaderboardWindow.class);
+        for (LeaderboardWindow window : LeaderboardWindow.values()) {
+            Instant start = window.start(now);
+            if (!event.occurredAt().isBefore(start)) {
+                boards.get(window).apply(start, event);
+                changed.add(window);
+            }
+        }
+        if (!changed.isEmpty()) {
+            eventPublisher.publishEvent(new LeaderboardUpdated(changed));
+        }
+    }
+
+    public Page<LeaderboardRow> page(LeaderboardWindow window, Pageable pageable) {
+        Instant start = window.start(clock.instant());
+        Board board = boards.get(window);
+        Slice slice = board.read(start, pageable);
+        List<Standing> standings = slice.standings();
+        List<Long> ranks = slice.ranks();
+
+        List<Long> unknown = standings.stream()
+                .map(Standing::userId)
+                .filter(id -> !members.containsKey(id))
+                .toList();
+        if (!unknown.isEmpty()) {
+            loadMembers(unknown);
+        }
+
+        List<LeaderboardRow> rows = new ArrayList<>(standings.size());
+        for (int i = 0; i < standings.size(); i++) {
+            Standing standing = standings.get(i);
+            Member member = members.getOrDefault(standing.userId(), Member.UNKNOWN);
+            rows.add(new LeaderboardRow(
+                    ranks.get(i),
+                    standing.userId(),
+                    member.name(),
+                    member.referralCode(),
+                    standing.verifications(),
+                    standing.signups()
+            ));
+        }
+        return new PageImpl<>(rows, pageable, slice.total());
+    }
+
+    /** Number of members on the window's board right now. */
+    public int size(LeaderboardWindow window) {
+        return boards.get(window).size(window.start(clock.instant()));
+    }
+
+    private void loadMembers(Collection<Long> userIds) {
+        List<Long> ids = new ArrayList<>(userIds);
+        for (int from = 0; from < ids.size(); from += 1000) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + 1000));
+            for (UserSummary summary : userRepository.findByIdIn(chunk)) {
+                members.put(summary.getId(), new Member(summary.getFullName(), summary.getReferralCode()));
+            }
+        }
+    }
+
+    record Standing(long userId, long verifications, long signups) {
+    }
+
+    private record Slice(List<Standing> standings, List<Long> ranks, int total) {
+    }
+
+    private record Member(String name, String referralCode) {
+        static final Member UNKNOWN = new Member(null, null);
+    }
+
+    private static final class Board {
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<Long, Standing> byUser = new HashMap<>();
+        private final OrderStatisticTree<Standing> order = new OrderStatisticTree<>(ORDER);
+        private volatile Instant start = Instant.EPOCH;
+
+        void reset(Instant start, List<ReferrerWindowStats> stats) {
+            lock.writeLock().lock();
+            try {
+                this.start = start;
+                byUser.clear();
+                order.clear();
+                for (ReferrerWindowStats s : stats) {
+                    Standing standing = new Standing(s.referrerUserId(), s.verifications(), s.signups());
+                    byUser.put(standing.userId(), standing);
+                    order.insert(standing);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void apply(Instant currentStart, ReferralEventRecorded event) {
+            lock.writeLock().lock();
+            try {
+                rollOver(currentStart);
+                Long userId = event.referrerUserId();
+                Standing previous = byUser.get(userId);
+                if (previous != null) {
+                    order.remove(previous);
+                } else {
+                    previous = new Standing(userId, 0, 0);
+                }
+                Standing next = event.eventType() == ReferralEventType.VERIFICATION
+                        ? new Standing(userId, previous.verifications() + 1, previous.signups())
+                        : new Standing(userId, previous.verifications(), previous.signups() + 1);
+                byUser.put(userId, next);
+                order.insert(next);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        Slice read(Instant currentStart, Pageable pageable) {
+            if (!start.equals(currentStart)) {
+                lock.writeLock().lock();
+                try {
+                    rollOver(currentStart);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            lock.readLock().lock();
+            try {
+                long offset = pageable.getOffset();
+                if (offset >= order.size()) {
+                    return new Slice(List.of(), List.of(), order.size());
+                }
+                // Sized by what is actually left on the board, not by the requested page size
+                List<Standing> standings = order.range((int) offset, pageable.getPageSize());
+                List<Long> ranks = new ArrayList<>(standings.size());
+                for (Standing standing : standings) {
+                    // Competition ranking: 1 + number of users with strictly more verifications
+                    ranks.add(order.rank(new Standing(Long.MIN_VALUE, standing.verifications(), Long.MAX_VALUE)) + 1L);
+                }
+                return new Slice(standings, ranks, order.size());
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        int size(Instant currentStart) {
+            if (!start.equals(currentStart)) {
+                // Rolled over on the next read or write, which starts the board empty
+                return 0;
+            }
+            lock.readLock().lock();
+            try {
+                return order.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // Caller holds the write lock
+        private void rollOver(Instant currentStart) {
+            if (!start.equals(currentStart)) {
+                start = currentStart;
+                byUser.clear();
+                order.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.byys.backend_otp.leaderboard;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serialized leaderboard pages with their strong ETags. Concurrent requests for the same page share
+ * a single load. Each window has a version that is bumped when its standings change; the version
+ * and the window start are part of the key, so a page is never served after an update or a
+ * day/week/month rollover, even if it was still loading when the update landed.
+ */
+@Component
+public class LeaderboardPageCache {
+
+    private final LeaderboardEngine leaderboardEngine;
+    private final ObjectMapper objectMapper;
+    private final Cache<PageKey, CachedPage> pages;
+    private final Map<LeaderboardWindow, AtomicLong> versions = new EnumMap<>(LeaderboardWindow.class);
+
+    public LeaderboardPageCache(LeaderboardEngine leaderboardEngine, ObjectMapper objectMapper) {
+        this.leaderboardEngine = leaderboardEngine;
+        this.objectMapper = objectMapper;
+        this.pages = Caffeine.newBuilder()
+                .maximumSize(1_000)
+                .expireAfterWrite(Duration.ofMinutes(5))
+                .build();
+        for (LeaderboardWindow window : LeaderboardWindow.values()) {
+            versions.put(window, new AtomicLong());
+        }
+    }
+
+    public CachedPage get(LeaderboardWindow window, int page, int size) {
+        PageKey key = new PageKey(window, window.start(Instant.now()), versions.get(window).get(), page, size);
+        if (page > 0 && (long) page * size >= leaderboardEngine.size(window)) {
+            // Past the end every page is empty; caching them would let a scan of page numbers evict the hot pages
+            return load(key);
+        }
+        return pages.get(key, this::load);
+    }
+
+    @EventListener
+    public void onLeaderboardUpdated(LeaderboardUpdated event) {
+        event.windows().forEach(window -> versions.get(window).incrementAndGet());
+        pages.asMap().keySet().removeIf(key -> event.windows().contains(key.window()));
+    }
+
+    private CachedPage load(PageKey key) {
+        Page<Map<String, Object>> page = leaderboardEngine
+                .page(key.window(), PageRequest.of(key.page(), key.size()))
+                .map(LeaderboardPageCache::toLeaderboardEntry);
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(page);
+            return new CachedPage(body, etag(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize leaderboard page", e);
+        }
+    }
+
+    static Map<String, Object> toLeaderboardEntry(LeaderboardRow row) {
+        // Use a mutable map like HashMap to handle potential null values
+        Map<String, Object> userDetails = new HashMap<>();
+        userDetails.put("rank", row.rank());
+        userDetails.put("userId", row.userId());
+        userDetails.put("name", row.name());
+        if (row.referralCode() != null) {
+            userDetails.put("referralCode", row.referralCode());
+        }
+        userDetails.put("verifiedReferrals", row.verifiedReferrals());
+        userDetails.put("totalSignups", row.totalSignups());
+        userDetails.put("conversionRate", calculateConversionRate(row.totalSignups(), row.verifiedReferrals()));
+        return userDetails;
+    }
+
+    private static double calculateConversionRate(long signups, long verifications) {
+        return signups > 0 ? (verifications * 100.0 / signups) : 0;
+    }
+
+    private static String etag(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record PageKey(LeaderboardWindow window, Instant windowStart, long version, int page, int size) {
+    }
+
+    public record CachedPage(byte[] body, String etag) {
+    }
+}
@@ -0,0 +1,9 @@
+package com.byys.backend_otp.leaderboard;
+
+public record LeaderboardRow(long rank,
+                             Long userId,
+                             String name,
+                             String referralCode,
+                             long verifiedReferrals,
+                             long totalSignups) {
+}
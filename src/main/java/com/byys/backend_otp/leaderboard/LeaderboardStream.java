@@ -0,0 +1,286 @@
+package com.byys.backend_otp.leaderboard;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Live leaderboard over Server-Sent Events. One shared ticker per instance turns
+ * {@link LeaderboardUpdated} notifications into at most one push per window per tick: it reads the
+ * top rows once, diffs them against the previous push and serializes the delta once for every
+ * subscriber. A new subscriber first gets a {@code snapshot} event, then {@code delta} events with
+ * the full value of every row that changed plus the ids that left the top rows, so applying a
+ * delta twice is harmless.
+ *
+ * <p>Each subscriber has a small bounded queue drained on a virtual thread, so a slow client never
+ * holds up the ticker or other clients. When a queue overflows its pending deltas are discarded
+ * and the client is sent a fresh snapshot instead.
+ */
+@Component
+@Slf4j
+public class LeaderboardStream {
+
+    private final LeaderboardEngine leaderboardEngine;
+    private final ObjectMapper objectMapper;
+    private final int topRows;
+    private final int bufferSize;
+    private final int maxSubscribers;
+    private final long timeoutMillis;
+    private final Duration heartbeatInterval;
+    private final ExecutorService senders = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("leaderboard-sse-", 0).factory());
+    private final Map<LeaderboardWindow, Channel> channels = new EnumMap<>(LeaderboardWindow.class);
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final Counter resyncs;
+    private volatile Instant lastHeartbeat = Instant.now();
+
+    public LeaderboardStream(LeaderboardEngine leaderboardEngine,
+                             ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             @Value("${leaderboard.stream.top-rows:100}") int topRows,
+                             @Value("${leaderboard.stream.buffer-size:16}") int bufferSize,
+                             @Value("${leaderboard.stream.max-subscribers:10000}") int maxSubscribers,
+                             @Value("${leaderboard.stream.timeout:PT30M}") Duration timeout,
+                             @Value("${leaderboard.stream.heartbeat-interval:PT15S}") Duration heartbeatInterval) {
+        this.leaderboardEngine = leaderboardEngine;
+        this.objectMapper = objectMapper;
+        this.topRows = topRows;
+        this.bufferSize = bufferSize;
+        this.maxSubscribers = maxSubscribers;
+        this.timeoutMillis = timeout.toMillis();
+        this.heartbeatInterval = heartbeatInterval;
+        for (LeaderboardWindow window : LeaderboardWindow.values()) {
+            channels.put(window, new Channel(window));
+        }
+        this.resyncs = meterRegistry.counter("leaderboard.stream.resyncs");
+        meterRegistry.gauge("leaderboard.stream.subscribers", subscriberCount);
+    }
+
+    /** Opens a stream, or returns empty when the subscriber limit has been reached. */
+    public Optional<SseEmitter> subscribe(LeaderboardWindow window) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            return Optional.empty();
+        }
+        Channel channel = channels.get(window);
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(channel, emitter);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(error -> subscriber.close());
+        channel.lock.lock();
+        try {
+            if (channel.rows == null) {
+                refresh(channel);
+            }
+            channel.subscribers.add(subscriber);
+        } finally {
+            channel.lock.unlock();
+        }
+        subscriber.schedule();
+        return Optional.of(emitter);
+    }
+
+    @EventListener
+    public void onLeaderboardUpdated(LeaderboardUpdated event) {
+        event.windows().forEach(window -> channels.get(window).dirty.set(true));
+    }
+
+    @Scheduled(fixedDelayString = "${leaderboard.stream.push-interval:PT1S}")
+    public void tick() {
+        for (Channel channel : channels.values()) {
+            try {
+                push(channel);
+            } catch (RuntimeException e) {
+                log.error("Leaderboard stream push failed for {}", channel.window, e);
+            }
+        }
+        if (Instant.now().isAfter(lastHeartbeat.plus(heartbeatInterval))) {
+            lastHeartbeat = Instant.now();
+            Set<DataWithMediaType> heartbeat = SseEmitter.event().comment("keepalive").build();
+            channels.values().forEach(channel -> channel.subscribers.forEach(s -> s.offer(heartbeat)));
+        }
+    }
+
+    private void push(Channel channel) {
+        channel.lock.lock();
+        try {
+            if (channel.subscribers.isEmpty()) {
+                // Nobody listening: forget the state and rebuild it for the next subscriber
+                channel.rows = null;
+                channel.dirty.set(false);
+                return;
+            }
+            Instant windowStart = channel.window.start(Instant.now());
+            boolean rolledOver = !windowStart.equals(channel.windowStart);
+            if (!channel.dirty.getAndSet(false) && !rolledOver) {
+                return;
+            }
+            Map<Long, LeaderboardRow> previous = channel.rows;
+            refresh(channel);
+
+            List<Map<String, Object>> changed = new ArrayList<>();
+            channel.rows.forEach((userId, row) -> {
+                if (!row.equals(previous.get(userId))) {
+                    changed.add(LeaderboardPageCache.toLeaderboardEntry(row));
+                }
+            });
+            List<Long> removed = previous.keySet().stream()
+                    .filter(userId -> !channel.rows.containsKey(userId))
+                    .toList();
+            if (changed.isEmpty() && removed.isEmpty()) {
+                return;
+            }
+            Map<String, Object> delta = new LinkedHashMap<>();
+            delta.put("window", channel.window);
+            delta.put("sequence", channel.sequence);
+            delta.put("rows", changed);
+            delta.put("removed", removed);
+            Set<DataWithMediaType> frame = frame("delta", channel.sequence, delta);
+            channel.subscribers.forEach(subscriber -> subscriber.offer(frame));
+        } finally {
+            channel.lock.unlock();
+        }
+    }
+
+    // Caller holds the channel lock
+    private void refresh(Channel channel) {
+        channel.windowStart = channel.window.start(Instant.now());
+        Map<Long, LeaderboardRow> rows = new LinkedHashMap<>();
+        List<Map<String, Object>> entries = new ArrayList<>();
+        for (LeaderboardRow row : leaderboardEngine.page(channel.window, PageRequest.of(0, topRows))) {
+            rows.put(row.userId(), row);
+            entries.add(LeaderboardPageCache.toLeaderboardEntry(row));
+        }
+        channel.rows = rows;
+        channel.sequence++;
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("window", channel.window);
+        snapshot.put("sequence", channel.sequence);
+        snapshot.put("rows", entries);
+        channel.snapshot = frame("snapshot", channel.sequence, snapshot);
+    }
+
+    private Set<DataWithMediaType> frame(String name, long sequence, Object payload) {
+        try {
+            return SseEmitter.event()
+                    .id(Long.toString(sequence))
+                    .name(name)
+                    .data(objectMapper.writeValueAsString(payload), MediaType.APPLICATION_JSON)
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize leaderboard " + name, e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        channels.values().forEach(channel -> channel.subscribers.forEach(subscriber -> subscriber.emitter.complete()));
+        senders.shutdown();
+    }
+
+    private static final class Channel {
+        final LeaderboardWindow window;
+        final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        final AtomicBoolean dirty = new AtomicBoolean();
+        // Not a monitor: subscribers arrive on virtual request threads and a contended monitor would pin them
+        final ReentrantLock lock = new ReentrantLock();
+        Map<Long, LeaderboardRow> rows;
+        Instant windowStart;
+        long sequence;
+        volatile Set<DataWithMediaType> snapshot;
+
+        Channel(LeaderboardWindow window) {
+            this.window = window;
+        }
+    }
+
+    private final class Subscriber {
+        final Channel channel;
+        final SseEmitter emitter;
+        final BlockingQueue<Set<DataWithMediaType>> queue = new ArrayBlockingQueue<>(bufferSize);
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        final AtomicBoolean closed = new AtomicBoolean();
+        volatile boolean resync = true;
+
+        Subscriber(Channel channel, SseEmitter emitter) {
+            this.channel = channel;
+            this.emitter = emitter;
+        }
+
+        void offer(Set<DataWithMediaType> frame) {
+            if (!queue.offer(frame)) {
+                queue.clear();
+                resync = true;
+                resyncs.increment();
+            }
+            schedule();
+        }
+
+        void schedule() {
+            if (!closed.get() && scheduled.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                if (resync) {
+                    resync = false;
+                    queue.clear();
+                    emitter.send(channel.snapshot);
+                }
+                Set<DataWithMediaType> frame;
+                while (!closed.get() && (frame = queue.poll()) != null) {
+                    emitter.send(frame);
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client went away or the emitter already completed
+                close();
+                emitter.completeWithError(e);
+            } finally {
+                scheduled.set(false);
+            }
+            if ((resync || !queue.isEmpty()) && !closed.get()) {
+                schedule();
+            }
+        }
+
+        void close() {
+            if (closed.compareAndSet(false, true)) {
+                channel.subscribers.remove(this);
+                subscriberCount.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.byys.backend_otp.leaderboard;
+
+import java.util.Set;
+
+/**
+ * Published by {@link LeaderboardEngine} after standings in the given windows changed.
+ */
+public record LeaderboardUpdated(Set<LeaderboardWindow> windows) {
+}
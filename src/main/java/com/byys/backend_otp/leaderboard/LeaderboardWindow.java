@@ -0,0 +1,55 @@
+package com.byys.backend_otp.leaderboard;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+
+public enum LeaderboardWindow {
+    DAILY {
+        @Override
+        LocalDate firstDay(LocalDate today) {
+            return today;
+        }
+
+        @Override
+        LocalDate nextFirstDay(LocalDate today) {
+            return today.plusDays(1);
+        }
+    },
+    WEEKLY {
+        @Override
+        LocalDate firstDay(LocalDate today) {
+            return today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        }
+
+        @Override
+        LocalDate nextFirstDay(LocalDate today) {
+            return firstDay(today).plusWeeks(1);
+        }
+    },
+    MONTHLY {
+        @Override
+        LocalDate firstDay(LocalDate today) {
+            return today.withDayOfMonth(1);
+        }
+
+        @Override
+        LocalDate nextFirstDay(LocalDate today) {
+            return firstDay(today).plusMonths(1);
+        }
+    };
+
+    abstract LocalDate firstDay(LocalDate today);
+
+    abstract LocalDate nextFirstDay(LocalDate today);
+
+    public Instant start(Instant now) {
+        return firstDay(LocalDate.ofInstant(now, ZoneOffset.UTC)).atStartOfDay().toInstant(ZoneOffset.UTC);
+    }
+
+    public Instant end(Instant now) {
+        return nextFirstDay(LocalDate.ofInstant(now, ZoneOffset.UTC)).atStartOfDay().toInstant(ZoneOffset.UTC);
+    }
+}
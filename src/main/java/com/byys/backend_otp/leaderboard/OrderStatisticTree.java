@@ -0,0 +1,140 @@
+package com.byys.backend_otp.leaderboard;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Size-augmented treap. Keys must be unique under the comparator. Insert, remove, rank and
+ * positional lookup are all O(log n) expected. Not thread-safe.
+ */
+final class OrderStatisticTree<K> {
+
+    private final Comparator<? super K> comparator;
+    private Node<K> root;
+
+    OrderStatisticTree(Comparator<? super K> comparator) {
+        this.comparator = comparator;
+    }
+
+    int size() {
+        return size(root);
+    }
+
+    void insert(K key) {
+        Node<K>[] parts = split(root, key, false);
+        root = merge(merge(parts[0], new Node<>(key)), parts[1]);
+    }
+
+    void remove(K key) {
+        Node<K>[] lower = split(root, key, false);
+        Node<K>[] upper = split(lower[1], key, true);
+        // upper[0] holds the single key equal to {@code key}, dropped here
+        root = merge(lower[0], upper[1]);
+    }
+
+    /** Number of keys strictly less than {@code key}. */
+    int rank(K key) {
+        int rank = 0;
+        Node<K> node = root;
+        while (node != null) {
+            if (comparator.compare(key, node.key) <= 0) {
+                node = node.left;
+            } else {
+                rank += size(node.left) + 1;
+                node = node.right;
+            }
+        }
+        return rank;
+    }
+
+    K get(int index) {
+        Node<K> node = root;
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.key;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+        throw new IndexOutOfBoundsException(index);
+    }
+
+    List<K> range(int from, int count) {
+        // long arithmetic: from + count may exceed Integer.MAX_VALUE
+        int end = (int) Math.min((long) from + Math.max(0, count), size());
+        List<K> result = new ArrayList<>(Math.max(0, end - from));
+        for (int i = from; i < end; i++) {
+            result.add(get(i));
+        }
+        return result;
+    }
+
+    void clear() {
+        root = null;
+    }
+
+    // Splits into (keys < key, keys >= key), or (keys <= key, keys > key) when inclusive
+    @SuppressWarnings("unchecked")
+    private Node<K>[] split(Node<K> node, K key, boolean inclusive) {
+        if (node == null) {
+            return new Node[]{null, null};
+        }
+        int cmp = comparator.compare(node.key, key);
+        boolean goesLeft = inclusive ? cmp <= 0 : cmp < 0;
+        if (goesLeft) {
+            Node<K>[] parts = split(node.right, key, inclusive);
+            node.right = parts[0];
+            node.update();
+            parts[0] = node;
+            return parts;
+        }
+        Node<K>[] parts = split(node.left, key, inclusive);
+        node.left = parts[1];
+        node.update();
+        parts[1] = node;
+        return parts;
+    }
+
+    private Node<K> merge(Node<K> left, Node<K> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static final class Node<K> {
+        final K key;
+        final int priority = ThreadLocalRandom.current().nextInt();
+        Node<K> left;
+        Node<K> right;
+        int size = 1;
+
+        Node(K key) {
+            this.key = key;
+        }
+
+        void update() {
+            size = 1 + OrderStatisticTree.size(left) + OrderStatisticTree.size(right);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.byys.backend_otp.otp;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+
+/** Node-local store; only correct while a single instance serves both send and verify. */
+@Service
+@ConditionalOnProperty(prefix = "otp", name = "store", havingValue = "memory")
+public class InMemoryOtpStore implements OtpStore {
+
+    private final Cache<String, Entry> codes = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfter(Expiry.<String, Entry>creating((phone, entry) -> entry.ttl()))
+            .build();
+
+    @Override
+    public void put(String phone, String code, Duration ttl) {
+        codes.put(phone, new Entry(code, ttl));
+    }
+
+    @Override
+    public boolean verifyAndDelete(String phone, String code) {
+        boolean[] matched = {false};
+        // computeIfPresent makes check-and-remove atomic, so two racing verifications cannot both succeed
+        codes.asMap().computeIfPresent(phone, (key, entry) -> {
+            if (entry.code().equals(code)) {
+                matched[0] = true;
+                return null;
+            }
+            return entry;
+        });
+        return matched[0];
+    }
+
+    private record Entry(String code, Duration ttl) {
+    }
+}
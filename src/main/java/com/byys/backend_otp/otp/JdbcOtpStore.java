@@ -0,0 +1,87 @@
+package com.byys.backend_otp.otp;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Shared store on the UNLOGGED {@code otp_codes} table, so any instance can verify a code issued
+ * by another. Codes are stored as HMAC-SHA256 digests keyed with {@code otp.hash-secret}, so a
+ * leaked table can't be reversed by hashing the small code space offline. Verification is a single
+ * {@code DELETE ... RETURNING}: the match, the expiry check and the single-use guarantee all
+ * happen in one round trip. Expired rows are swept periodically.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(prefix = "otp", name = "store", havingValue = "jdbc", matchIfMissing = true)
+public class JdbcOtpStore implements OtpStore {
+
+    private static final String PUT_SQL =
+            "INSERT INTO otp_codes (phone, code_hash, expires_at) VALUES (?, ?, ?) " +
+            "ON CONFLICT (phone) DO UPDATE SET code_hash = EXCLUDED.code_hash, expires_at = EXCLUDED.expires_at";
+    private static final String VERIFY_SQL =
+            "DELETE FROM otp_codes WHERE phone = ? AND code_hash = ? AND expires_at > NOW() RETURNING phone";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SecretKeySpec hashKey;
+
+    public JdbcOtpStore(JdbcTemplate jdbcTemplate,
+                        TransactionTemplate transactionTemplate,
+                        @Value("${otp.hash-secret}") String hashSecret) {
+        if (hashSecret == null || hashSecret.isBlank()) {
+            throw new IllegalArgumentException("OTP hash secret must be set");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.hashKey = new SecretKeySpec(hashSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+    }
+
+    @Override
+    public void put(String phone, String code, Duration ttl) {
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.update(PUT_SQL, phone, digest(phone, code), Timestamp.from(Instant.now().plus(ttl))));
+    }
+
+    @Override
+    public boolean verifyAndDelete(String phone, String code) {
+        Boolean matched = transactionTemplate.execute(status ->
+                !jdbcTemplate.queryForList(VERIFY_SQL, String.class, phone, digest(phone, code)).isEmpty());
+        return Boolean.TRUE.equals(matched);
+    }
+
+    @Scheduled(initialDelayString = "${otp.sweep-interval:PT1M}", fixedDelayString = "${otp.sweep-interval:PT1M}")
+    public void sweepExpired() {
+        try {
+            Integer swept = transactionTemplate.execute(status ->
+                    jdbcTemplate.update("DELETE FROM otp_codes WHERE expires_at <= NOW()"));
+            if (swept != null && swept > 0) {
+                log.debug("Swept {} expired OTPs", swept);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Expired OTP sweep failed", e);
+        }
+    }
+
+    private byte[] digest(String phone, String code) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(hashKey);
+            return mac.doFinal((phone + ':' + code).getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,9 +1,20 @@
 package com.byys.backend_otp.otp;
 
+import java.time.Duration;
+
 public class OtpRateLimitException extends RuntimeException {
+    private final Duration retryAfter;
+
     public OtpRateLimitException(String message) {
-        super(message);
+        this(message, Duration.ZERO);
     }
-}
 
+    public OtpRateLimitException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
 
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -1,73 +1,76 @@
 package com.byys.backend_otp.otp;
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
+import com.byys.backend_otp.util.GcraRateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.security.SecureRandom;
 import java.time.Duration;
-import java.time.Instant;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 
 @Service
 public class OtpService {
 
-    private final Cache<String, String> otpCache;
-    private final Map<String, RequestWindow> rateLimitMap = new ConcurrentHashMap<>();
-    private final int ttlMinutes;
-    private final int maxRequestsPer5m;
+    private final OtpStore otpStore;
+    private final Duration ttl;
+    private final GcraRateLimiter phoneLimiter;
+    private final GcraRateLimiter ipLimiter;
+    private final Counter phoneRejections;
+    private final Counter ipRejections;
     private final SecureRandom random = new SecureRandom();
 
-    public OtpService(@Value("${otp.ttl-minutes:5}") int ttlMinutes,
-                      @Value("${otp.max-requests-per-5m:3}") int maxRequestsPer5m) {
-        this.ttlMinutes = ttlMinutes;
-        this.maxRequestsPer5m = maxRequestsPer5m;
-        this.otpCache = Caffeine.newBuilder()
-            .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
-            .maximumSize(100_000)
-            .build();
+    public OtpService(OtpStore otpStore,
+                      MeterRegistry meterRegistry,
+                      @Value("${otp.ttl-minutes:5}") int ttlMinutes,
+                      @Value("${otp.max-requests-per-5m:3}") int maxRequestsPer5m,
+                      @Value("${otp.rate-limit.ip-max-requests:20}") int ipMaxRequests,
+                      @Value("${otp.rate-limit.window:PT5M}") Duration window,
+                      @Value("${otp.rate-limit.max-keys:200000}") long maxKeys) {
+        this.otpStore = otpStore;
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.phoneLimiter = new GcraRateLimiter(maxRequestsPer5m, window, maxKeys);
+        this.ipLimiter = new GcraRateLimiter(ipMaxRequests, window, maxKeys);
+        this.phoneRejections = meterRegistry.counter("otp.ratelimit.rejections", "key", "phone");
+        this.ipRejections = meterRegistry.counter("otp.ratelimit.rejections", "key", "ip");
+        meterRegistry.gauge("otp.ratelimit.keys", List.of(Tag.of("key", "phone")),
+                phoneLimiter, GcraRateLimiter::trackedKeys);
+        meterRegistry.gauge("otp.ratelimit.keys", List.of(Tag.of("key", "ip")),
+                ipLimiter, GcraRateLimiter::trackedKeys);
     }
 
-    public String generateAndStore(String phone) {
-        enforceRateLimit(phone);
+    public String generateAndStore(String phone, String clientIp) {
+        enforceRateLimit(phone, clientIp);
         String otp = String.format("%06d", random.nextInt(1_000_000));
-        otpCache.put(phone, otp);
+        otpStore.put(phone, otp, ttl);
         return otp;
     }
 
     public boolean verifyAndInvalidate(String phone, String provided) {
-        String expected = otpCache.getIfPresent(phone);
-        if (expected != null && expected.equals(provided)) {
-            otpCache.invalidate(phone);
-            return true;
+        if (provided == null) {
+            return false;
         }
-        return false;
+        return otpStore.verifyAndDelete(phone, provided);
     }
 
-    private void enforceRateLimit(String phone) {
-        RequestWindow window = rateLimitMap.computeIfAbsent(phone, k -> new RequestWindow());
-        synchronized (window) {
-            Instant now = Instant.now();
-            if (window.resetAt.isBefore(now)) {
-                window.reset(now.plus(Duration.ofMinutes(5)));
-            }
-            if (window.count >= maxRequestsPer5m) {
-                throw new OtpRateLimitException("Too many OTP requests. Please try again later.");
-            }
-            window.count++;
+    private void enforceRateLimit(String phone, String clientIp) {
+        // The IP is only checked here and charged last, so requests refused for the phone do not
+        // use up the budget of everyone behind the same address
+        if (clientIp != null) {
+            rejectIfLimited(ipLimiter.peek(clientIp), ipRejections);
+        }
+        rejectIfLimited(phoneLimiter.tryAcquire(phone), phoneRejections);
+        if (clientIp != null) {
+            rejectIfLimited(ipLimiter.tryAcquire(clientIp), ipRejections);
         }
     }
 
-    private static class RequestWindow {
-        int count = 0;
-        Instant resetAt = Instant.EPOCH;
-        void reset(Instant next) {
-            count = 0;
-            resetAt = next;
+    private static void rejectIfLimited(Duration wait, Counter rejections) {
+        if (!wait.isZero()) {
+            rejections.increment();
+            throw new OtpRateLimitException("Too many OTP requests. Please try again later.", wait);
         }
     }
 }
-
-
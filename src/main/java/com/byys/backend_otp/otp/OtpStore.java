@@ -0,0 +1,13 @@
+package com.byys.backend_otp.otp;
+
+import java.time.Duration;
+
+/** Where issued OTPs wait to be verified. Selected with {@code otp.store}: {@code jdbc} (default) or {@code memory}. */
+public interface OtpStore {
+
+    /** Stores the code for the phone, replacing any code issued earlier. */
+    void put(String phone, String code, Duration ttl);
+
+    /** Atomically checks the code and, if it matches and has not expired, deletes it so it cannot be reused. */
+    boolean verifyAndDelete(String phone, String code);
+}
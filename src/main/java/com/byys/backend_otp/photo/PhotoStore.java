@@ -0,0 +1,138 @@
+package com.byys.backend_otp.photo;
+
+import com.byys.backend_otp.util.ImageResizer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Content-addressed store for processed profile photos. A photo's key is the SHA-256 of the
+ * rendition settings and the uploaded bytes, so identical uploads share one set of files and a
+ * key's content never changes, which is what lets {@link PhotoController} mark responses
+ * immutable. Each photo is kept as a JPEG per configured rendition size under
+ * {@code <root>/<first two hex digits>/<key>-<size>.jpg}; files are written to a temp name and
+ * renamed, so readers never see a partial file.
+ */
+@Component
+public class PhotoStore {
+
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path root;
+    private final int[] renditions;
+    private final ImageResizer resizer;
+    private final byte[] settings;
+    private final Counter stored;
+    private final Counter deduplicated;
+
+    public PhotoStore(MeterRegistry meterRegistry,
+                      @Value("${photo.store-dir:uploads/photos/}") String root,
+                      @Value("${photo.renditions:500,160,64}") int[] renditions,
+                      @Value("${photo.quality:0.7}") float quality,
+                      @Value("${photo.max-pixels:50000000}") long maxPixels,
+                      @Value("${photo.workers:0}") int workerCount) throws IOException {
+        if (renditions.length == 0 || Arrays.stream(renditions).anyMatch(size -> size < 1)) {
+            throw new IllegalArgumentException("photo.renditions must list at least one positive size");
+        }
+        this.root = Files.createDirectories(Paths.get(root));
+        // Largest first, so each rendition is scaled from the previous one
+        this.renditions = Arrays.stream(renditions).boxed().distinct()
+                .sorted(Comparator.reverseOrder()).mapToInt(Integer::intValue).toArray();
+        int writers = workerCount > 0 ? workerCount : Runtime.getRuntime().availableProcessors();
+        this.resizer = new ImageResizer(this.renditions[0], quality, maxPixels, writers);
+        // Part of every key: changing the sizes or quality produces new keys instead of new bytes under old ones
+        this.settings = (Arrays.toString(this.renditions) + ";" + quality).getBytes(StandardCharsets.UTF_8);
+        this.stored = meterRegistry.counter("photo.store.photos", "outcome", "stored");
+        this.deduplicated = meterRegistry.counter("photo.store.photos", "outcome", "deduplicated");
+    }
+
+    /** Stores every rendition of the image in {@code source} unless already present, and returns its key. */
+    public String store(Path source) throws IOException {
+        String key = keyOf(source);
+        if (Arrays.stream(renditions).allMatch(size -> Files.exists(path(key, size)))) {
+            deduplicated.increment();
+            return key;
+        }
+        BufferedImage image;
+        try (InputStream in = Files.newInputStream(source)) {
+            image = resizer.decode(in);
+        }
+        Files.createDirectories(path(key, renditions[0]).getParent());
+        for (int size : renditions) {
+            image = ImageResizer.fit(image, size);
+            write(image, path(key, size));
+        }
+        stored.increment();
+        return key;
+    }
+
+    /** The file for a rendition, if the key is well formed, the size is configured and the photo exists. */
+    public Optional<Path> find(String key, int size) {
+        if (!KEY.matcher(key).matches() || Arrays.stream(renditions).noneMatch(s -> s == size)) {
+            return Optional.empty();
+        }
+        Path file = path(key, size);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    public Path path(String key, int size) {
+        return root.resolve(key.substring(0, 2)).resolve(key + "-" + size + ".jpg");
+    }
+
+    public int largestRendition() {
+        return renditions[0];
+    }
+
+    private void write(BufferedImage image, Path target) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                resizer.encode(image, out);
+            }
+            // A concurrent store of the same photo writes identical bytes, so replacing is harmless
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private String keyOf(Path source) throws IOException {
+        MessageDigest digest = sha256();
+        digest.update(settings);
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(source)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
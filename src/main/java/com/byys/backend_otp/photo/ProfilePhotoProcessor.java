@@ -0,0 +1,235 @@
+package com.byys.backend_otp.photo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compresses profile photos off the request path. Registration only stages the raw upload as
+ * {@code <profileId>.upload} and marks the profile PENDING; after commit the photo goes to a
+ * bounded pool of CPU-sized platform threads, which stores the renditions in {@link PhotoStore} and
+ * sets {@code photo_key}, {@code photo_path} and READY (or FAILED). When the queue is full the photo stays PENDING in
+ * staging and is picked up by the periodic requeue, which also runs at startup so nothing staged
+ * before a restart is lost. A PENDING profile with no staged file on this node may be staged on
+ * another one, so it is only marked FAILED once it is older than {@code photo.orphan-age}.
+ */
+@Component
+@Slf4j
+public class ProfilePhotoProcessor {
+
+    private static final String STAGED_SUFFIX = ".upload";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Path stagingDir;
+    private final Duration orphanAge;
+    private final PhotoStore photoStore;
+    private final BlockingQueue<Runnable> queue;
+    private final ThreadPoolExecutor workers;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final Timer processingTimer;
+    private final Counter ready;
+    private final Counter failed;
+    private final Counter deferred;
+
+    public ProfilePhotoProcessor(JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 MeterRegistry meterRegistry,
+                                 PhotoStore photoStore,
+                                 @Value("${photo.staging-dir:uploads/staging/}") String stagingDir,
+                                 @Value("${photo.workers:0}") int workerCount,
+                                 @Value("${photo.queue-capacity:200}") int queueCapacity,
+                                 @Value("${photo.orphan-age:PT1H}") Duration orphanAge) throws IOException {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.stagingDir = Files.createDirectories(Paths.get(stagingDir));
+        this.orphanAge = orphanAge;
+        this.photoStore = photoStore;
+        int threads = workerCount > 0 ? workerCount : Runtime.getRuntime().availableProcessors();
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicInteger threadIds = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue, runnable -> {
+            Thread thread = new Thread(runnable, "photo-worker-" + threadIds.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("photo.processing.queue.depth", queue, BlockingQueue::size)
+                .description("Staged profile photos waiting for a worker")
+                .register(meterRegistry);
+        this.processingTimer = Timer.builder("photo.processing.duration")
+                .description("Time to decode, resize and encode one profile photo")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.ready = meterRegistry.counter("photo.processing.photos", "outcome", "ready");
+        this.failed = meterRegistry.counter("photo.processing.photos", "outcome", "failed");
+        this.deferred = meterRegistry.counter("photo.processing.photos", "outcome", "deferred");
+    }
+
+    /** Saves the raw upload for a profile that is being created in the current transaction. */
+    public void stage(Long profileId, MultipartFile photo) throws IOException {
+        try (InputStream in = photo.getInputStream()) {
+            Files.copy(in, staged(profileId));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPhotoStaged(ProfilePhotoStaged event) {
+        submit(event.profileId());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_ROLLBACK)
+    public void onRolledBack(ProfilePhotoStaged event) {
+        deleteStaged(event.profileId());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${photo.requeue-interval:PT5M}", fixedDelayString = "${photo.requeue-interval:PT5M}")
+    public void requeuePending() {
+        Timestamp cutoff = Timestamp.from(Instant.now().minus(orphanAge));
+        Set<Long> pendingIds = new HashSet<>();
+        Set<Long> expired = new HashSet<>();
+        jdbcTemplate.query("""
+                SELECT id, (photo_staged_at IS NULL OR photo_staged_at < ?) AS expired
+                  FROM user_profile
+                 WHERE photo_status = 'PENDING'
+                """, rs -> {
+            pendingIds.add(rs.getLong("id"));
+            if (rs.getBoolean("expired")) {
+                expired.add(rs.getLong("id"));
+            }
+        }, cutoff);
+        for (Long profileId : pendingIds) {
+            if (Files.exists(staged(profileId))) {
+                submit(profileId);
+            } else if (expired.contains(profileId) && !inFlight.contains(profileId)) {
+                // Staging is per node, so a recent photo may be waiting on another replica's disk;
+                // only give up on it once it has had orphan-age to be processed somewhere
+                markFailed(profileId);
+            }
+        }
+        removeOrphans(pendingIds);
+    }
+
+    private void submit(Long profileId) {
+        if (!inFlight.add(profileId)) {
+            return;
+        }
+        try {
+            workers.execute(() -> process(profileId));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(profileId);
+            deferred.increment();
+            log.warn("Photo queue full; profile {} stays pending until the next requeue", profileId);
+        }
+    }
+
+    private void process(Long profileId) {
+        Path source = staged(profileId);
+        boolean finished = true;
+        try {
+            // Pixel limits are checked from the header, so a decompression bomb fails here without being decoded
+            String key = processingTimer.recordCallable(() -> photoStore.store(source));
+            String photoPath = photoStore.path(key, photoStore.largestRendition()).toString();
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(
+                    "UPDATE user_profile SET photo_key = ?, photo_path = ?, photo_status = 'READY' WHERE id = ?",
+                    key, photoPath, profileId));
+            ready.increment();
+        } catch (Exception e) {
+            if (workers.isShutdown()) {
+                // Cut short by shutdown: leave it staged and PENDING for the next start
+                finished = false;
+                return;
+            }
+            log.warn("Processing photo for profile {} failed", profileId, e);
+            markFailed(profileId);
+        } finally {
+            if (finished) {
+                deleteStaged(profileId);
+            }
+            inFlight.remove(profileId);
+        }
+    }
+
+    private void markFailed(Long profileId) {
+        failed.increment();
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(
+                "UPDATE user_profile SET photo_status = 'FAILED' WHERE id = ? AND photo_status = 'PENDING'", profileId));
+    }
+
+    // Staged files with no pending profile come from registrations that never committed
+    private void removeOrphans(Set<Long> pendingIds) {
+        Instant cutoff = Instant.now().minus(orphanAge);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(stagingDir, "*" + STAGED_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                Long profileId = parseProfileId(name.substring(0, name.length() - STAGED_SUFFIX.length()));
+                if ((profileId == null || !pendingIds.contains(profileId))
+                        && Files.getLastModifiedTime(file).toInstant().isBefore(cutoff)) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not clean photo staging directory", e);
+        }
+    }
+
+    private void deleteStaged(Long profileId) {
+        try {
+            Files.deleteIfExists(staged(profileId));
+        } catch (IOException e) {
+            log.warn("Could not delete staged photo for profile {}", profileId, e);
+        }
+    }
+
+    private Path staged(Long profileId) {
+        return stagingDir.resolve(profileId + STAGED_SUFFIX);
+    }
+
+    private static Long parseProfileId(String value) {
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        // Anything unfinished stays PENDING in staging and is requeued on the next start
+        workers.shutdownNow();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+}
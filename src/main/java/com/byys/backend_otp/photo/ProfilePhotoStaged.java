@@ -0,0 +1,5 @@
+package com.byys.backend_otp.photo;
+
+/** Published inside the registration transaction; processing starts once it commits. */
+public record ProfilePhotoStaged(Long profileId) {
+}
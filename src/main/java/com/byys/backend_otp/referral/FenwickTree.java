@@ -0,0 +1,60 @@
+package com.byys.backend_otp.referral;
+
+import java.util.Arrays;
+
+/**
+ * Binary indexed tree of counts over non-negative integer scores. Grows on demand. Not thread-safe.
+ */
+final class FenwickTree {
+
+    private long[] tree;
+    private long total;
+
+    FenwickTree(int capacity) {
+        this.tree = new long[Math.max(2, capacity) + 1];
+    }
+
+    void add(int score, long delta) {
+        ensureCapacity(score);
+        for (int i = score + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+        total += delta;
+    }
+
+    /** Number of entries with a score less than or equal to {@code score}. */
+    long countAtMost(int score) {
+        long sum = 0;
+        for (int i = Math.min(score + 1, tree.length - 1); i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    long countAbove(int score) {
+        return total - countAtMost(score);
+    }
+
+    private void ensureCapacity(int score) {
+        if (score + 1 < tree.length) {
+            return;
+        }
+        int oldSize = tree.length - 1;
+        long[] values = new long[oldSize];
+        for (int i = 0; i < oldSize; i++) {
+            values[i] = countAtMost(i) - (i == 0 ? 0 : countAtMost(i - 1));
+        }
+        int newSize = Math.max(oldSize * 2, score + 1);
+        tree = new long[newSize + 1];
+        for (int i = 0; i < oldSize; i++) {
+            for (int j = i + 1; j < tree.length; j += j & -j) {
+                tree[j] += values[i];
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(tree, 0);
+        total = 0;
+    }
+}
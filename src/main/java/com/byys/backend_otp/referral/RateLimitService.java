@@ -1,46 +1,28 @@
 package com.byys.backend_otp.referral;
 
 
-import com.github.benmanes.caffeine.cache.Cache;
-import com.github.benmanes.caffeine.cache.Caffeine;
-import lombok.Getter;
+import com.byys.backend_otp.util.GcraRateLimiter;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
-import java.time.Instant;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class RateLimitService {
-    private final Cache<String, RateLimitCounter> rateLimitCache;
+    private static final long MAX_KEYS = 10_000;
 
-    public RateLimitService() {
-        this.rateLimitCache = Caffeine.newBuilder()
-                .expireAfterWrite(1, TimeUnit.HOURS)
-                .maximumSize(10_000)
-                .build();
-    }
+    // One lock-free limiter per policy; the previous per-key monitors could pin virtual threads under contention
+    private final Map<Policy, GcraRateLimiter> limiters = new ConcurrentHashMap<>();
 
     public void checkRateLimit(String key, int maxAttempts, Duration period) {
-        RateLimitCounter counter = rateLimitCache.get(key, k -> new RateLimitCounter());
-
-        synchronized (counter) {
-            if (counter.getCount() >= maxAttempts &&
-                    Instant.now().isBefore(counter.getLastAttempt().plus(period))) {
-                throw new IllegalArgumentException("Too many attempts. Please try again later.");
-            }
-            counter.increment();
+        GcraRateLimiter limiter = limiters.computeIfAbsent(new Policy(maxAttempts, period),
+                policy -> new GcraRateLimiter(policy.maxAttempts(), policy.period(), MAX_KEYS));
+        if (!limiter.tryAcquire(key).isZero()) {
+            throw new IllegalArgumentException("Too many attempts. Please try again later.");
         }
     }
 
-    @Getter
-    private static class RateLimitCounter {
-        private int count = 0;
-        private Instant lastAttempt = Instant.now();
-
-        public void increment() {
-            count++;
-            lastAttempt = Instant.now();
-        }
+    private record Policy(int maxAttempts, Duration period) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,55 @@
+package com.byys.backend_otp.referral;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Hands out referral codes that are unique by construction, so registration never probes the
+ * database for collisions. Sequence numbers are reserved in blocks from {@code referral_code_seq}
+ * (hi/lo), one round trip per {@link #BLOCK_SIZE} codes, and run through {@link ReferralCodeCodec}.
+ * Numbers in a block left unused at shutdown are simply skipped.
+ */
+@Component
+public class ReferralCodeAllocator {
+
+    /** Must equal the INCREMENT BY of referral_code_seq. */
+    public static final int BLOCK_SIZE = 100;
+
+    private final ReferralCodeCodec codec;
+    private final LongSupplier blockStarts;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long next;
+    private long limit;
+
+    @Autowired
+    public ReferralCodeAllocator(JdbcTemplate jdbcTemplate,
+                                 @Value("${referral.code.secret}") String secret) {
+        this(new ReferralCodeCodec(secret),
+                () -> jdbcTemplate.queryForObject("SELECT nextval('referral_code_seq')", Long.class));
+    }
+
+    public ReferralCodeAllocator(ReferralCodeCodec codec, LongSupplier blockStarts) {
+        this.codec = codec;
+        this.blockStarts = blockStarts;
+    }
+
+    public String next() {
+        long sequence;
+        lock.lock();
+        try {
+            if (next >= limit) {
+                next = blockStarts.getAsLong();
+                limit = next + BLOCK_SIZE;
+            }
+            sequence = next++;
+        } finally {
+            lock.unlock();
+        }
+        return codec.encode(sequence);
+    }
+}
@@ -0,0 +1,104 @@
+package com.byys.backend_otp.referral;
+
+import com.byys.backend_otp.util.Hashing;
+
+/**
+ * Maps sequence numbers to 9-character referral codes and back. A keyed Feistel network permutes
+ * the 45-bit space, so consecutive numbers give unrelated-looking codes while distinct numbers can
+ * never give the same code; the result is written in Crockford base32, which has no I, L, O or U.
+ * Legacy codes are 8 characters, so they cannot collide with these. Changing the secret changes the
+ * permutation and would allow collisions with codes already issued, so it must stay fixed. It must
+ * also stay private: anyone holding it can invert codes to sequence numbers and enumerate valid ones.
+ */
+public final class ReferralCodeCodec {
+
+    public static final int LENGTH = 9;
+    /** Number of distinct codes: 32^9. */
+    public static final long CAPACITY = 1L << 45;
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int ROUNDS = 4;
+    // The Feistel network runs on 46 bits (two 23-bit halves); values past 45 bits are cycle-walked back
+    private static final int HALF_BITS = 23;
+    private static final long HALF_MASK = (1L << HALF_BITS) - 1;
+
+    private final long[] roundKeys = new long[ROUNDS];
+
+    public ReferralCodeCodec(String secret) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalArgumentException("Referral code secret must be set");
+        }
+        for (int i = 0; i < ROUNDS; i++) {
+            roundKeys[i] = Hashing.hash64(secret + ':' + i);
+        }
+    }
+
+    public String encode(long sequence) {
+        if (sequence < 0 || sequence >= CAPACITY) {
+            throw new IllegalArgumentException("Referral code sequence out of range: " + sequence);
+        }
+        long value = sequence;
+        do {
+            value = permute(value);
+        } while (value >= CAPACITY);
+        char[] code = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            code[i] = ALPHABET[(int) (value & 31)];
+            value >>>= 5;
+        }
+        return new String(code);
+    }
+
+    public long decode(String code) {
+        if (code.length() != LENGTH) {
+            throw new IllegalArgumentException("Referral code must be " + LENGTH + " characters");
+        }
+        long value = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            int digit = digit(code.charAt(i));
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid referral code character: " + code.charAt(i));
+            }
+            value = (value << 5) | digit;
+        }
+        do {
+            value = unpermute(value);
+        } while (value >= CAPACITY);
+        return value;
+    }
+
+    private long permute(long value) {
+        long left = value >>> HALF_BITS;
+        long right = value & HALF_MASK;
+        for (int round = 0; round < ROUNDS; round++) {
+            long next = left ^ roundFunction(right, round);
+            left = right;
+            right = next;
+        }
+        return (left << HALF_BITS) | right;
+    }
+
+    private long unpermute(long value) {
+        long left = value >>> HALF_BITS;
+        long right = value & HALF_MASK;
+        for (int round = ROUNDS - 1; round >= 0; round--) {
+            long previous = right ^ roundFunction(left, round);
+            right = left;
+            left = previous;
+        }
+        return (left << HALF_BITS) | right;
+    }
+
+    private long roundFunction(long half, int round) {
+        return Hashing.mix64(half ^ roundKeys[round]) & HALF_MASK;
+    }
+
+    private static int digit(char c) {
+        for (int i = 0; i < ALPHABET.length; i++) {
+            if (ALPHABET[i] == Character.toUpperCase(c)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,214 @@
+package com.byys.backend_otp.referral;
+
+import com.byys.backend_otp.user.UserReferralCode;
+import com.byys.backend_otp.user.UserRegistered;
+import com.byys.backend_otp.user.UserRepository;
+import com.byys.backend_otp.util.BloomFilter;
+import com.byys.backend_otp.util.GcraRateLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory map from referral code to referrer id, fronted by a Bloom filter. Registrations on
+ * this node are added as soon as they commit; registrations on other nodes are picked up by a
+ * periodic scan of recently created users, which re-reads an overlap window so rows that commit
+ * late are not skipped, and a periodic full rebuild catches anything else. A code that is not
+ * known here may still be newer than the last refresh, so the click path checks it against the
+ * database within a per-client budget: junk codes cannot turn into a query per request, and one
+ * client sending them cannot use up the checks for everyone else.
+ */
+@Component
+@Slf4j
+public class ReferralCodeIndex {
+
+    private static final int LOAD_BATCH = 10_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final UserRepository userRepository;
+    private final int minCapacity;
+    private final Duration refreshOverlap;
+    private final GcraRateLimiter missLookups;
+    private final Counter fallbackHits;
+    private final Counter fallbackMisses;
+    private final Counter fallbackThrottled;
+    private volatile Map<String, Long> codes = new ConcurrentHashMap<>();
+    private volatile BloomFilter filter;
+    private volatile long capacity;
+    // Start of the last completed refresh scan; the next one reads from here minus the overlap
+    private volatile Instant refreshedFrom;
+
+    public ReferralCodeIndex(UserRepository userRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${referral.code-index.min-capacity:100000}") int minCapacity,
+                             @Value("${referral.code-index.refresh-overlap:PT5M}") Duration refreshOverlap,
+                             @Value("${referral.code-index.miss-lookups-per-minute:30}") int missLookupsPerMinute,
+                             @Value("${referral.code-index.miss-lookup-clients:100000}") long missLookupClients) {
+        this.userRepository = userRepository;
+        this.minCapacity = minCapacity;
+        this.refreshOverlap = refreshOverlap;
+        this.missLookups = new GcraRateLimiter(missLookupsPerMinute, Duration.ofMinutes(1), missLookupClients);
+        this.fallbackHits = meterRegistry.counter("referral.code.index.fallback", "outcome", "hit");
+        this.fallbackMisses = meterRegistry.counter("referral.code.index.fallback", "outcome", "miss");
+        this.fallbackThrottled = meterRegistry.counter("referral.code.index.fallback", "outcome", "throttled");
+        meterRegistry.gauge("referral.code.index.size", this, index -> index.codes.size());
+        resetFilter(minCapacity);
+    }
+
+    @PostConstruct
+    @Scheduled(initialDelayString = "${referral.code-index.rebuild-interval:PT1H}",
+            fixedDelayString = "${referral.code-index.rebuild-interval:PT1H}")
+    public void rebuild() {
+        Instant started = Instant.now();
+        // Built off to the side so lookups keep using the current index until the swap
+        Map<String, Long> fresh = new ConcurrentHashMap<>();
+        long highest = 0;
+        List<UserReferralCode> batch;
+        do {
+            batch = userRepository.findByIdGreaterThanAndReferralCodeIsNotNullOrderByIdAsc(highest, Limit.of(LOAD_BATCH));
+            for (UserReferralCode row : batch) {
+                fresh.put(row.getReferralCode(), row.getId());
+                highest = Math.max(highest, row.getId());
+            }
+        } while (batch.size() == LOAD_BATCH);
+        synchronized (this) {
+            // Codes never change owner, so everything already known is kept: the scan can miss rows
+            // that committed behind it, and those were added here by events, refreshes or lookups
+            codes.forEach(fresh::putIfAbsent);
+            codes = fresh;
+            if (refreshedFrom == null) {
+                refreshedFrom = started;
+            }
+            resetFilter(Math.max(minCapacity, fresh.size() * 2L));
+        }
+        log.info("Referral code index rebuilt with {} codes", fresh.size());
+    }
+
+    @Scheduled(initialDelayString = "${referral.code-index.refresh-interval:PT30S}",
+            fixedDelayString = "${referral.code-index.refresh-interval:PT30S}")
+    public void refresh() {
+        int added = loadNewCodes();
+        if (added > 0) {
+            log.debug("Referral code index picked up {} new codes", added);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserRegistered(UserRegistered event) {
+        if (event.referralCode() != null) {
+            add(event.referralCode(), event.userId());
+        }
+    }
+
+    /**
+     * Best-effort lookup for high-volume public paths such as click tracking. Codes not known here
+     * are checked against the database within {@code client}'s budget; past it the result is
+     * {@link Lookup#throttled()} rather than a verdict on the code.
+     */
+    public Lookup lookup(String code, String client) {
+        if (code == null || code.isEmpty()) {
+            return Lookup.UNKNOWN;
+        }
+        // The filter answers most junk codes without touching the map
+        if (filter.mightContain(code)) {
+            Long userId = codes.get(code);
+            if (userId != null) {
+                return new Lookup(userId, false);
+            }
+        }
+        if (!missLookups.tryAcquire(client).isZero()) {
+            fallbackThrottled.increment();
+            return Lookup.THROTTLED;
+        }
+        return loadFromDatabase(code).map(userId -> new Lookup(userId, false)).orElse(Lookup.UNKNOWN);
+    }
+
+    /**
+     * Authoritative lookup for writes that must not lose a referral: anything not in the map is
+     * always checked against the database.
+     */
+    public Optional<Long> resolve(String code) {
+        if (code == null || code.isEmpty()) {
+            return Optional.empty();
+        }
+        Long userId = codes.get(code);
+        return userId != null ? Optional.of(userId) : loadFromDatabase(code);
+    }
+
+    private Optional<Long> loadFromDatabase(String code) {
+        Optional<Long> fromDatabase = userRepository.findByReferralCode(code).map(user -> user.getId());
+        if (fromDatabase.isPresent()) {
+            fallbackHits.increment();
+            add(code, fromDatabase.get());
+        } else {
+            fallbackMisses.increment();
+        }
+        return fromDatabase;
+    }
+
+    private int loadNewCodes() {
+        Instant from = refreshedFrom;
+        if (from == null) {
+            return 0;
+        }
+        Instant started = Instant.now();
+        // created_at is stamped before commit, so a row can become visible after rows with later
+        // timestamps; re-reading the overlap window picks those up on a later pass
+        Instant createdAt = from.minus(refreshOverlap);
+        long id = 0;
+        int added = 0;
+        List<UserReferralCode> batch;
+        do {
+            batch = userRepository.findReferralCodesAfter(createdAt, id, Limit.of(LOAD_BATCH));
+            for (UserReferralCode row : batch) {
+                if (!codes.containsKey(row.getReferralCode())) {
+                    add(row.getReferralCode(), row.getId());
+                    added++;
+                }
+                createdAt = row.getCreatedAt();
+                id = row.getId();
+            }
+        } while (batch.size() == LOAD_BATCH);
+        refreshedFrom = started;
+        return added;
+    }
+
+    private synchronized void add(String code, Long userId) {
+        codes.put(code, userId);
+        filter.put(code);
+        if (codes.size() > capacity) {
+            // Past its sizing the filter's false-positive rate climbs quickly; regrow it from the map
+            resetFilter(codes.size() * 2L);
+        }
+    }
+
+    private synchronized void resetFilter(long newCapacity) {
+        BloomFilter next = new BloomFilter(newCapacity, FALSE_POSITIVE_RATE);
+        codes.keySet().forEach(next::put);
+        capacity = newCapacity;
+        filter = next;
+    }
+
+    /** Outcome of {@link #lookup}: the referrer, or no referrer because the code is unknown or went unchecked. */
+    public record Lookup(Long referrerId, boolean throttled) {
+        static final Lookup UNKNOWN = new Lookup(null, false);
+        static final Lookup THROTTLED = new Lookup(null, true);
+
+        public boolean found() {
+            return referrerId != null;
+        }
+    }
+}
@@ -1,89 +1,131 @@
 package com.byys.backend_otp.referral;
 
-import com.byys.backend_otp.user.User;
-import com.byys.backend_otp.user.UserRepository;
+import com.byys.backend_otp.analytics.ClickSketchService;
+import com.byys.backend_otp.analytics.FunnelAggregator;
+import com.byys.backend_otp.analytics.FunnelReport;
+import com.byys.backend_otp.analytics.UniqueVisitors;
+import com.byys.backend_otp.dto.CursorPage;
+import com.byys.backend_otp.leaderboard.LeaderboardPageCache;
+import com.byys.backend_otp.leaderboard.LeaderboardStream;
+import com.byys.backend_otp.leaderboard.LeaderboardWindow;
+import com.byys.backend_otp.security.AuthenticatedUser;
+import com.byys.backend_otp.user.CachedUser;
+import com.byys.backend_otp.user.UserCache;
+import com.byys.backend_otp.util.KeysetCursor;
 import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.*;
-import java.time.temporal.TemporalAdjusters;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/referrals")
 @Validated
 public class ReferralController {
 
-    private final UserRepository userRepository;
+    // Leaderboard pages are public; anything larger is served as this many rows
+    private static final int MAX_LEADERBOARD_PAGE_SIZE = 100;
+
+    private final UserCache userCache;
     private final ReferralEventRepository referralEventRepository;
     private final ReferralTrackingService referralTrackingService;
     private final RateLimitService rateLimitService;
-
-    public ReferralController(UserRepository userRepository,
+    private final LeaderboardPageCache leaderboardPageCache;
+    private final LeaderboardStream leaderboardStream;
+    private final ReferralRollupService referralRollupService;
+    private final ReferralCodeIndex referralCodeIndex;
+    private final ClickSketchService clickSketchService;
+    private final FunnelAggregator funnelAggregator;
+
+    public ReferralController(UserCache userCache,
                               ReferralEventRepository referralEventRepository,
                               ReferralTrackingService referralTrackingService,
-                              RateLimitService rateLimitService) {
-        this.userRepository = userRepository;
+                              RateLimitService rateLimitService,
+                              LeaderboardPageCache leaderboardPageCache,
+                              LeaderboardStream leaderboardStream,
+                              ReferralRollupService referralRollupService,
+                              ReferralCodeIndex referralCodeIndex,
+                              ClickSketchService clickSketchService,
+                              FunnelAggregator funnelAggregator) {
+        this.userCache = userCache;
         this.referralEventRepository = referralEventRepository;
         this.referralTrackingService = referralTrackingService;
         this.rateLimitService = rateLimitService;
+        this.leaderboardPageCache = leaderboardPageCache;
+        this.leaderboardStream = leaderboardStream;
+        this.referralRollupService = referralRollupService;
+        this.referralCodeIndex = referralCodeIndex;
+        this.clickSketchService = clickSketchService;
+        this.funnelAggregator = funnelAggregator;
     }
 
     @GetMapping("/share-link")
     @Transactional
     public ResponseEntity<?> getShareLink(
-            @AuthenticationPrincipal UserDetails principal,
+            @AuthenticationPrincipal AuthenticatedUser principal,
             @RequestParam(defaultValue = "https://app.example.com/register") String baseUrl,
             @RequestParam(required = false) String source) {
 
-        User user = userRepository.findByPhone(principal.getUsername())
+        CachedUser user = userCache.get(principal.userId())
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
-        String shareLink = referralTrackingService.generateShareLink(user, baseUrl, source);
+        String shareLink = referralTrackingService.generateShareLink(user.id(), user.referralCode(), baseUrl, source);
 
         return ResponseEntity.ok(Map.of(
                 "shareLink", shareLink,
-                "referralCode", user.getReferralCode()
+                "referralCode", user.referralCode()
         ));
     }
 
     @PostMapping("/track/share")
     @Transactional
     public ResponseEntity<?> trackShare(
-            @AuthenticationPrincipal UserDetails principal,
+            @AuthenticationPrincipal AuthenticatedUser principal,
             @RequestParam(required = false) String source,
             HttpServletRequest request) {
 
-        User user = userRepository.findByPhone(principal.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        referralTrackingService.trackShareEvent(user, source, request);
+        if (!referralTrackingService.trackShareEvent(principal.userId(), source, request)) {
+            return ResponseEntity.status(503).body("Service busy, please retry");
+        }
 
         return ResponseEntity.accepted().build();
     }
 
     @GetMapping("/track/click")
-    @Transactional
     public ResponseEntity<?> trackClick(
             @RequestParam String code,
             @RequestParam(required = false) String source,
             HttpServletRequest request) {
 
-        // Validate referral code exists
-        if (!userRepository.existsByReferralCode(code)) {
+        // Answered from memory; codes not known here get a database check within this client's budget
+        ReferralCodeIndex.Lookup referrer = referralCodeIndex.lookup(code, request.getRemoteAddr());
+        if (referrer.throttled()) {
+            // Unchecked, so nothing is recorded; registration resolves the code itself
+            return redirectToRegistration(code);
+        }
+        if (!referrer.found()) {
             return ResponseEntity.badRequest().body("Invalid referral code");
         }
 
+        if (clickSketchService.isSuspicious(request.getRemoteAddr())) {
+            // Flagged by today's click sketches: the visitor still lands, the click isn't credited
+            return redirectToRegistration(code);
+        }
+
         // 10 clicks per hour per IP
         rateLimitService.checkRateLimit(
                 "click:" + request.getRemoteAddr(),
@@ -91,186 +133,171 @@ public class ReferralController {
                 Duration.ofHours(1)
         );
 
-        referralTrackingService.trackClickEvent(code, source, request);
+        // Recorded off the request thread; a full ingest buffer drops the click, never the redirect
+        referralTrackingService.trackClickEvent(referrer.referrerId(), source, request);
 
-        // Redirect to registration page with referral code
+        return redirectToRegistration(code);
+    }
+
+    private static ResponseEntity<?> redirectToRegistration(String code) {
         return ResponseEntity.status(302)
-                .header("Location", "/register?ref=" + code)
+                .header("Location", UriComponentsBuilder.fromPath("/register").queryParam("ref", code)
+                        .encode().build().toUriString())
                 .build();
     }
 
+    /**
+     * Offset paging by default. Passing {@code cursor} (empty for the first page) switches to keyset
+     * paging, where every page costs the same and the total is only counted on request.
+     */
     @GetMapping("/history")
     @Transactional
-    public Page<ReferralEvent> getReferralHistory(
-            @AuthenticationPrincipal UserDetails principal,
+    public ResponseEntity<?> getReferralHistory(
+            @AuthenticationPrincipal AuthenticatedUser principal,
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
 
-        User user = userRepository.findByPhone(principal.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
+        Long userId = principal.userId();
 
-        Pageable pageable = PageRequest.of(page, size);
-        return referralEventRepository.findByReferrerUserIdOrderByOccurredAtDesc(user.getId(), pageable);
+        if (cursor == null) {
+            Pageable pageable = PageRequest.of(page, size);
+            return ResponseEntity.ok(referralEventRepository.findByReferrerUserIdOrderByOccurredAtDesc(userId, pageable));
+        }
+
+        int pageSize = CursorPage.clampSize(size);
+        List<ReferralEvent> rows;
+        if (cursor.isEmpty()) {
+            rows = referralEventRepository.findByReferrerUserIdOrderByOccurredAtDescIdDesc(userId, Limit.of(pageSize + 1));
+        } else {
+            KeysetCursor after;
+            try {
+                after = KeysetCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+            rows = referralEventRepository.findByReferrerUserIdBefore(
+                    userId, after.timestamp(), after.id(), Limit.of(pageSize + 1));
+        }
+        Long total = includeTotal ? referralEventRepository.countByReferrerUserId(userId) : null;
+        return ResponseEntity.ok(CursorPage.of(rows, pageSize,
+                event -> new KeysetCursor(event.getOccurredAt(), event.getId()), total));
     }
 
     @GetMapping("/leaderboard/daily")
-    @Transactional
-    public ResponseEntity<Page<Map<String, Object>>> getDailyLeaderboard(
+    public ResponseEntity<byte[]> getDailyLeaderboard(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
-
-        LocalDate today = LocalDate.now(ZoneOffset.UTC);
-        Instant start = today.atStartOfDay().toInstant(ZoneOffset.UTC);
-        Instant end = today.plusDays(1).atStartOfDay().toInstant(ZoneOffset.UTC);
-
-        Pageable pageable = PageRequest.of(page, size);
-        Page<LeaderboardProjection> statsPage = referralEventRepository
-                .getLeaderboardStats(start, end, pageable);
+            @RequestParam(defaultValue = "20") int size,
+            WebRequest request) {
 
-        // Enriches the list of projections
-        List<Map<String, Object>> enrichedStats = enrichWithUserDetails(statsPage.getContent(), start, end);
-
-        // Create a new Page object with the enriched list and the original page metadata
-        Page<Map<String, Object>> enrichedPage = new PageImpl<>(
-                enrichedStats,
-                pageable,
-                statsPage.getTotalElements()
-        );
-
-        return ResponseEntity.ok(enrichedPage);
+        return leaderboardPage(LeaderboardWindow.DAILY, page, size, request);
     }
 
     @GetMapping("/leaderboard/weekly")
-    @Transactional
-    public ResponseEntity<?> getWeeklyLeaderboard(
+    public ResponseEntity<byte[]> getWeeklyLeaderboard(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
-
-        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+            @RequestParam(defaultValue = "20") int size,
+            WebRequest request) {
 
-        LocalDate monday = today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
-        LocalDate sunday = today.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
-        Instant start = monday.atStartOfDay().toInstant(ZoneOffset.UTC);
-        Instant end = sunday.plusDays(1).atStartOfDay().toInstant(ZoneOffset.UTC);
-
-        Pageable pageable = PageRequest.of(page, size);
-        Page<LeaderboardProjection> statsPage = referralEventRepository
-                .getLeaderboardStats(start, end, pageable);
-
-        // Enriches the list of projections
-        List<Map<String, Object>> enrichedStats = enrichWithUserDetails(statsPage.getContent(), start, end);
-
-        // Create a new Page object with the enriched list and the original page metadata
-        Page<Map<String, Object>> enrichedPage = new PageImpl<>(
-                enrichedStats,
-                pageable,
-                statsPage.getTotalElements()
-        );
-
-        return ResponseEntity.ok(enrichedPage);
+        return leaderboardPage(LeaderboardWindow.WEEKLY, page, size, request);
     }
 
     @GetMapping("/total-referralVer")
     @Transactional
-    public long getTotalReferralsVerified(@AuthenticationPrincipal UserDetails principal){
-        User user = userRepository.findByPhone(principal.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
-        return referralEventRepository.countVerifiedReferrals(user.getId());
+    public long getTotalReferralsVerified(@AuthenticationPrincipal AuthenticatedUser principal){
+        return referralRollupService.countVerifiedReferrals(principal.userId());
     }
 
     @GetMapping("/userStats")
     @Transactional
-    public ResponseEntity<?> getTotalReferralsSign(@AuthenticationPrincipal UserDetails principal){
-        User user = userRepository.findByPhone(principal.getUsername())
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        Long referrerUserId = user.getId();
+    public ResponseEntity<?> getTotalReferralsSign(@AuthenticationPrincipal AuthenticatedUser principal){
+        Long referrerUserId = principal.userId();
 
-        Long totalReferralsSign = referralEventRepository.countByReferrerUserIdAndEventType(referrerUserId, ReferralEventType.SIGNUP);
+        Long totalReferralsSign = referralRollupService.countEvents(referrerUserId, ReferralEventType.SIGNUP);
         int userRank = referralTrackingService.getUserRank(referrerUserId);
         return ResponseEntity.ok(Map.of("totalShares",totalReferralsSign,"currentRank",userRank));
     }
 
-    @GetMapping("/leaderboard/monthly")
-    @Transactional
-    public ResponseEntity<?> getMonthlyLeaderboard(
-            @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "20") int size) {
+    @GetMapping("/clicks/unique")
+    public ResponseEntity<UniqueVisitors> getUniqueClickers(
+            @AuthenticationPrincipal AuthenticatedUser principal,
+            @RequestParam(defaultValue = "7") int days) {
+        Long userId = principal.userId();
 
-        LocalDate today = LocalDate.now(ZoneOffset.UTC);
-        Instant start = today.withDayOfMonth(1).atStartOfDay().toInstant(ZoneOffset.UTC);
-        Instant end = today.plusDays(1).atStartOfDay().toInstant(ZoneOffset.UTC); // Include today
+        LocalDate to = LocalDate.now(ZoneOffset.UTC);
+        LocalDate from = to.minusDays(Math.min(Math.max(days, 1), 90) - 1L);
+        return ResponseEntity.ok(clickSketchService.uniqueVisitors(userId, from, to));
+    }
 
-        Pageable pageable = PageRequest.of(page, size);
-        Page<LeaderboardProjection> statsPage = referralEventRepository
-                .getLeaderboardStats(start, end, pageable);
+    /** The caller's funnel over {@code [from, to)}, rounded out to whole hours; defaults to the last 30 days. */
+    @GetMapping("/funnel")
+    public ResponseEntity<FunnelReport> getFunnel(
+            @AuthenticationPrincipal AuthenticatedUser principal,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(required = false) String source) {
+        Long userId = principal.userId();
 
-        // Enriches the list of projections
-        List<Map<String, Object>> enrichedStats = enrichWithUserDetails(statsPage.getContent(), start, end);
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofDays(30));
+        if (!start.isBefore(end)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(funnelAggregator.funnel(userId, source, start, end));
+    }
 
-        // Create a new Page object with the enriched list and the original page metadata
-        Page<Map<String, Object>> enrichedPage = new PageImpl<>(
-                enrichedStats,
-                pageable,
-                statsPage.getTotalElements()
-        );
+    @GetMapping("/funnel/sources")
+    public ResponseEntity<List<FunnelReport>> getFunnelBySource(
+            @AuthenticationPrincipal AuthenticatedUser principal,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to) {
+        Long userId = principal.userId();
+
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofDays(30));
+        if (!start.isBefore(end)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(funnelAggregator.funnelBySource(userId, start, end));
+    }
 
-        return ResponseEntity.ok(enrichedPage);
+    @GetMapping("/leaderboard/monthly")
+    public ResponseEntity<byte[]> getMonthlyLeaderboard(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            WebRequest request) {
+
+        return leaderboardPage(LeaderboardWindow.MONTHLY, page, size, request);
     }
 
-    private List<Map<String, Object>> enrichWithUserDetails(List<LeaderboardProjection> stats, Instant start, Instant end) {
-        if (stats == null) {
-            return new ArrayList<>();
+    /** Live leaderboard: a {@code snapshot} event on connect, then {@code delta} events as ranks move. */
+    @GetMapping(value = "/leaderboard/{window}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamLeaderboard(@PathVariable String window) {
+        LeaderboardWindow leaderboardWindow;
+        try {
+            leaderboardWindow = LeaderboardWindow.valueOf(window.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
-
-        return stats.stream()
-                .filter(Objects::nonNull)
-                .map(stat -> {
-                    User user = userRepository.findById(stat.getReferrerUserId())
-                            .orElseThrow(() -> new RuntimeException("User not found for ID: " + stat.getReferrerUserId()));
-
-                    // Use a mutable map like HashMap to handle potential null values
-                    Map<String, Object> userDetails = new HashMap<>();
-
-                    long rank = referralEventRepository.countUsersAbove(
-                            stat.getReferrerUserId(),
-                            start,
-                            end
-                    ) + 1;
-
-                    // Add null checks for each value before putting it in the map
-                    userDetails.put("rank", rank);
-                    userDetails.put("userId", user.getId());
-                    userDetails.put("name", user.getFullName());
-
-                    // The following values might be null, so check them
-                    String referralCode = user.getReferralCode();
-                    if (referralCode != null) {
-                        userDetails.put("referralCode", referralCode);
-                    }
-
-                    Long verifications = stat.getVerifications();
-                    if (verifications != null) {
-                        userDetails.put("verifiedReferrals", verifications);
-                    }
-
-                    Long signups = stat.getSignups();
-                    if (signups != null) {
-                        userDetails.put("totalSignups", signups);
-                    }
-
-                    if (signups != null && verifications != null) {
-                        double conversionRate = calculateConversionRate(signups, verifications);
-                        userDetails.put("conversionRate", conversionRate);
-                    }
-
-                    return userDetails;
-                })
-                .collect(Collectors.toList());
+        return leaderboardStream.subscribe(leaderboardWindow)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(503).build());
     }
 
-    private double calculateConversionRate(long signups, long verifications) {
-        return signups > 0 ? (verifications * 100.0 / signups) : 0;
+    private ResponseEntity<byte[]> leaderboardPage(LeaderboardWindow window, int page, int size, WebRequest request) {
+        // Clamped so one request cannot size a huge page or mint unbounded cache keys
+        int pageSize = Math.min(Math.max(1, size), MAX_LEADERBOARD_PAGE_SIZE);
+        LeaderboardPageCache.CachedPage cached = leaderboardPageCache.get(window, Math.max(0, page), pageSize);
+        // Polling clients revalidate on every request and get a bodiless 304 while nothing changed
+        if (request.checkNotModified(cached.etag())) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(cached.etag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(cached.body());
     }
 
     private Map<String, Object> createLeaderboardResponse(
@@ -0,0 +1,29 @@
+package com.byys.backend_otp.referral;
+
+import com.byys.backend_otp.user.UserCounter;
+import com.byys.backend_otp.user.UserCounterBuffer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Counts committed referral events against the referrer's {@link UserCounter}s. Verified referrals
+ * are counted by {@link ReferralRankIndex}, which has to move the counter and the rank together.
+ */
+@Component
+public class ReferralCounterUpdater {
+
+    private final UserCounterBuffer userCounterBuffer;
+
+    public ReferralCounterUpdater(UserCounterBuffer userCounterBuffer) {
+        this.userCounterBuffer = userCounterBuffer;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReferralEvent(ReferralEventRecorded event) {
+        switch (event.eventType()) {
+            case SIGNUP -> userCounterBuffer.increment(event.referrerUserId(), UserCounter.REFERRAL_SIGNUPS);
+            case SHARE -> userCounterBuffer.increment(event.referrerUserId(), UserCounter.REFERRAL_SHARES);
+            default -> { }
+        }
+    }
+}
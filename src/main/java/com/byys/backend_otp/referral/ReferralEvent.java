@@ -39,7 +39,8 @@ public class ReferralEvent {
     @Column(name = "occurred_at", nullable = false, updatable = false)
     private Instant occurredAt;
 
-    @Column(name = "tracking_id", nullable = false, unique = true)
+    // Unique together with occurred_at, the partition key (see V3__partition_referral_events.sql)
+    @Column(name = "tracking_id", nullable = false)
     private String trackingId = UUID.randomUUID().toString();
 
     // Additional metadata fields
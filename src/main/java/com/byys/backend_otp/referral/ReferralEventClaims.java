@@ -0,0 +1,82 @@
+package com.byys.backend_otp.referral;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Exactly-once SIGNUP and VERIFICATION events. Each write is one statement: it claims the
+ * (referred user, event type) row in {@code referral_event_claims} with {@code ON CONFLICT DO
+ * NOTHING} and inserts the event only for a claim it actually made, so concurrent or repeated
+ * calls record the milestone once. An empty result means nothing was inserted.
+ */
+@Repository
+public class ReferralEventClaims {
+
+    private static final int MAX_SOURCE_LENGTH = 64;
+
+    private static final String CLAIM_SIGNUP_SQL =
+            "WITH claim AS (" +
+            "  INSERT INTO referral_event_claims (referred_user_id, event_type, referrer_user_id, claimed_at, referral_source) " +
+            "  VALUES (?, 'SIGNUP', ?, ?, ?) " +
+            "  ON CONFLICT DO NOTHING " +
+            "  RETURNING referred_user_id, referrer_user_id, claimed_at, referral_source) " +
+            "INSERT INTO referral_events (referrer_user_id, referred_user_id, event_type, occurred_at, tracking_id, referral_source) " +
+            "SELECT referrer_user_id, referred_user_id, 'SIGNUP', claimed_at, ?, referral_source FROM claim " +
+            "RETURNING referrer_user_id, referred_user_id, occurred_at, referral_source";
+
+    // The referrer and source are taken from the SIGNUP claim, so verification needs no separate lookup
+    private static final String CLAIM_VERIFICATION_SQL =
+            "WITH signup AS (" +
+            "  SELECT referrer_user_id, referral_source FROM referral_event_claims " +
+            "  WHERE referred_user_id = ? AND event_type = 'SIGNUP' AND referrer_user_id <> referred_user_id), " +
+            "claim AS (" +
+            "  INSERT INTO referral_event_claims (referred_user_id, event_type, referrer_user_id, claimed_at, referral_source) " +
+            "  SELECT ?, 'VERIFICATION', referrer_user_id, ?, referral_source FROM signup " +
+            "  ON CONFLICT DO NOTHING " +
+            "  RETURNING referred_user_id, referrer_user_id, claimed_at, referral_source) " +
+            "INSERT INTO referral_events (referrer_user_id, referred_user_id, event_type, occurred_at, tracking_id, referral_source) " +
+            "SELECT referrer_user_id, referred_user_id, 'VERIFICATION', claimed_at, ?, referral_source FROM claim " +
+            "RETURNING referrer_user_id, referred_user_id, occurred_at, referral_source";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ReferralEventClaims(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** {@code source} is the share link's source the referred user arrived from, if any. */
+    public Optional<ReferralEventRecorded> claimSignup(Long referrerUserId, Long referredUserId, String source) {
+        String referralSource = source == null || source.isBlank() ? null : source.trim();
+        if (referralSource != null && referralSource.length() > MAX_SOURCE_LENGTH) {
+            referralSource = referralSource.substring(0, MAX_SOURCE_LENGTH);
+        }
+        List<ReferralEventRecorded> inserted = jdbcTemplate.query(CLAIM_SIGNUP_SQL, mapper(ReferralEventType.SIGNUP),
+                referredUserId, referrerUserId, Timestamp.from(Instant.now()), referralSource, UUID.randomUUID().toString());
+        return inserted.stream().findFirst();
+    }
+
+    public Optional<ReferralEventRecorded> claimVerification(Long referredUserId) {
+        List<ReferralEventRecorded> inserted = jdbcTemplate.query(CLAIM_VERIFICATION_SQL, mapper(ReferralEventType.VERIFICATION),
+                referredUserId, referredUserId, Timestamp.from(Instant.now()), UUID.randomUUID().toString());
+        return inserted.stream().findFirst();
+    }
+
+    private static RowMapper<ReferralEventRecorded> mapper(ReferralEventType eventType) {
+        return (rs, rowNum) -> new ReferralEventRecorded(
+                rs.getLong("referrer_user_id"),
+                rs.getLong("referred_user_id"),
+                eventType,
+                rs.getTimestamp("occurred_at").toInstant(),
+                rs.getString("referral_source"),
+                null,
+                null
+        );
+    }
+}
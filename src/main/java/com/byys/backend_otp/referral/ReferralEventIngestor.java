@@ -0,0 +1,203 @@
+package com.byys.backend_otp.referral;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind pipeline for high-volume SHARE and LINK_CLICK events. Events are queued in a
+ * bounded buffer and written by a single background thread as JDBC batches, flushed when a batch
+ * fills up or the flush interval elapses. When the buffer is full, {@link #submit} waits briefly
+ * and then rejects the event instead of blocking the request thread. {@link ReferralEventRecorded}
+ * is published per event once its batch has been written.
+ */
+@Component
+@Slf4j
+public class ReferralEventIngestor {
+
+    private static final String INSERT_SQL = "INSERT INTO referral_events " +
+            "(referrer_user_id, referred_user_id, event_type, occurred_at, tracking_id, user_agent, ip_address, referral_source) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int MAX_USER_AGENT_LENGTH = 255;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BlockingQueue<ReferralEvent> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutMillis;
+    private final Timer flushTimer;
+    private final Counter written;
+    private final Counter rejected;
+    private final Counter failed;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    public ReferralEventIngestor(JdbcTemplate jdbcTemplate,
+                                 TransactionTemplate transactionTemplate,
+                                 ApplicationEventPublisher eventPublisher,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${referral.ingest.capacity:10000}") int capacity,
+                                 @Value("${referral.ingest.batch-size:500}") int batchSize,
+                                 @Value("${referral.ingest.flush-interval-ms:1000}") long flushIntervalMs,
+                                 @Value("${referral.ingest.offer-timeout-ms:20}") long offerTimeoutMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.offerTimeoutMillis = offerTimeoutMs;
+
+        Gauge.builder("referral.ingest.queue.depth", queue, BlockingQueue::size)
+                .description("Referral events waiting to be written")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("referral.ingest.flush")
+                .description("Latency of one batched referral event insert")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.written = meterRegistry.counter("referral.ingest.events", "outcome", "written");
+        this.rejected = meterRegistry.counter("referral.ingest.events", "outcome", "rejected");
+        this.failed = meterRegistry.counter("referral.ingest.events", "outcome", "failed");
+        this.worker = new Thread(this::run, "referral-ingest");
+        this.worker.setDaemon(true);
+    }
+
+    @PostConstruct
+    void start() {
+        worker.start();
+    }
+
+    /**
+     * Queues an event for writing. Returns {@code false} when the buffer stayed full for the offer
+     * timeout or the pipeline is shutting down; the event is then dropped.
+     */
+    public boolean submit(ReferralEvent event) {
+        if (!running) {
+            rejected.increment();
+            return false;
+        }
+        if (event.getOccurredAt() == null) {
+            event.setOccurredAt(Instant.now());
+        }
+        if (event.getUserAgent() != null && event.getUserAgent().length() > MAX_USER_AGENT_LENGTH) {
+            event.setUserAgent(event.getUserAgent().substring(0, MAX_USER_AGENT_LENGTH));
+        }
+        try {
+            if (!queue.offer(event, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                rejected.increment();
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    private void run() {
+        List<ReferralEvent> batch = new ArrayList<>(batchSize);
+        long batchStarted = 0;
+        while (running) {
+            try {
+                long waitNanos = batch.isEmpty()
+                        ? flushIntervalNanos
+                        : Math.max(0, flushIntervalNanos - (System.nanoTime() - batchStarted));
+                ReferralEvent event = queue.poll(waitNanos, TimeUnit.NANOSECONDS);
+                if (event != null) {
+                    if (batch.isEmpty()) {
+                        batchStarted = System.nanoTime();
+                    }
+                    batch.add(event);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+                if (batch.size() >= batchSize
+                        || (!batch.isEmpty() && System.nanoTime() - batchStarted >= flushIntervalNanos)) {
+                    flush(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("Referral ingest loop failed", e);
+            }
+        }
+        // Only this thread writes, so whatever is still queued is flushed here rather than by shutdown()
+        do {
+            flush(batch);
+        } while (queue.drainTo(batch, batchSize) > 0);
+    }
+
+    private void flush(List<ReferralEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            flushTimer.record(() -> transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, event) -> {
+                        ps.setLong(1, event.getReferrerUserId());
+                        if (event.getReferredUserId() != null) {
+                            ps.setLong(2, event.getReferredUserId());
+                        } else {
+                            ps.setNull(2, Types.BIGINT);
+                        }
+                        ps.setString(3, event.getEventType().name());
+                        ps.setTimestamp(4, Timestamp.from(event.getOccurredAt()));
+                        ps.setString(5, event.getTrackingId());
+                        ps.setString(6, event.getUserAgent());
+                        ps.setString(7, event.getIpAddress());
+                        ps.setString(8, event.getReferralSource());
+                    })));
+            written.increment(batch.size());
+        } catch (RuntimeException e) {
+            failed.increment(batch.size());
+            log.error("Dropping {} referral events after failed batch insert", batch.size(), e);
+            batch.clear();
+            return;
+        }
+        try {
+            // Listeners only hear about events that are actually in the table
+            for (ReferralEvent event : batch) {
+                eventPublisher.publishEvent(ReferralEventRecorded.of(event));
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        // submit() refuses new events from here on; the worker drains what is queued and exits
+        running = false;
+        worker.join(TimeUnit.SECONDS.toMillis(10));
+        if (worker.isAlive()) {
+            log.warn("Referral ingest worker still flushing after 10s; {} events may be lost", queue.size());
+            return;
+        }
+        log.info("Referral ingest pipeline stopped");
+    }
+}
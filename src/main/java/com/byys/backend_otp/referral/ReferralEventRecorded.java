@@ -0,0 +1,28 @@
+package com.byys.backend_otp.referral;
+
+import java.time.Instant;
+
+/**
+ * Published once a referral event has been accepted. Listeners registered with
+ * {@code @TransactionalEventListener} only see it after the surrounding transaction commits.
+ */
+public record ReferralEventRecorded(Long referrerUserId,
+                                    Long referredUserId,
+                                    ReferralEventType eventType,
+                                    Instant occurredAt,
+                                    String referralSource,
+                                    String ipAddress,
+                                    String userAgent) {
+
+    public static ReferralEventRecorded of(ReferralEvent event) {
+        return new ReferralEventRecorded(
+                event.getReferrerUserId(),
+                event.getReferredUserId(),
+                event.getEventType(),
+                event.getOccurredAt() != null ? event.getOccurredAt() : Instant.now(),
+                event.getReferralSource(),
+                event.getIpAddress(),
+                event.getUserAgent()
+        );
+    }
+}
@@ -1,5 +1,6 @@
 package com.byys.backend_otp.referral;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -14,6 +15,21 @@ public interface ReferralEventRepository extends JpaRepository<ReferralEvent, Lo
 
     Page<ReferralEvent> findByReferrerUserIdOrderByOccurredAtDesc(Long referrerUserId, Pageable pageable);
 
+    List<ReferralEvent> findByReferrerUserIdOrderByOccurredAtDescIdDesc(Long referrerUserId, Limit limit);
+
+    // The redundant occurredAt <= bound lets Postgres prune partitions and seek idx_referrer_user
+    @Query("SELECT r FROM ReferralEvent r " +
+            "WHERE r.referrerUserId = :userId " +
+            "AND r.occurredAt <= :occurredAt " +
+            "AND (r.occurredAt < :occurredAt OR r.id < :id) " +
+            "ORDER BY r.occurredAt DESC, r.id DESC")
+    List<ReferralEvent> findByReferrerUserIdBefore(@Param("userId") Long userId,
+                                                   @Param("occurredAt") Instant occurredAt,
+                                                   @Param("id") Long id,
+                                                   Limit limit);
+
+    long countByReferrerUserId(Long referrerUserId);
+
     @Query("SELECT COUNT(DISTINCT r.referredUserId) FROM ReferralEvent r " +
             "WHERE r.referrerUserId = :userId AND r.eventType = 'VERIFICATION'")
     long countVerifiedReferrals(@Param("userId") Long userId);
@@ -33,18 +49,6 @@ public interface ReferralEventRepository extends JpaRepository<ReferralEvent, Lo
                                           @Param("end") Instant end,
                                           Pageable pageable);
 
-    @Query("SELECT r.referrerUserId as referrerUserId, " +
-            "COUNT(r) as totalReferrals, " +
-            "COUNT(DISTINCT CASE WHEN r.eventType = 'SIGNUP' THEN r.referredUserId END) as signups, " +
-            "COUNT(DISTINCT CASE WHEN r.eventType = 'VERIFICATION' THEN r.referredUserId END) as verifications " +
-            "FROM ReferralEvent r " +
-            "WHERE r.occurredAt BETWEEN :start AND :end " +
-            "GROUP BY r.referrerUserId " +
-            "ORDER BY verifications DESC")
-    Page<LeaderboardProjection> getLeaderboardStats(@Param("start") Instant start,
-                                                    @Param("end") Instant end,
-                                                    Pageable pageable);
-
     @Query("SELECT r.referrerUserId as userId, COUNT(r) as verifiedCount " +
             "FROM ReferralEvent r " +
             "WHERE r.eventType = 'VERIFICATION' " +
@@ -52,21 +56,6 @@ public interface ReferralEventRepository extends JpaRepository<ReferralEvent, Lo
             "ORDER BY verifiedCount DESC")
     List<UserRankProjection> findAllUsersOrderByVerifiedReferrals();
 
-    @Query("SELECT COUNT(DISTINCT r2.referrerUserId) FROM ReferralEvent r2 " +
-            "WHERE r2.eventType = 'VERIFICATION' " +
-            "AND r2.occurredAt BETWEEN :start AND :end " +
-            "AND (SELECT COUNT(DISTINCT r1.referredUserId) FROM ReferralEvent r1 " +
-            "     WHERE r1.eventType = 'VERIFICATION' " +
-            "     AND r1.occurredAt BETWEEN :start AND :end " +
-            "     AND r1.referrerUserId = r2.referrerUserId) > " +
-            "    (SELECT COUNT(DISTINCT r.referredUserId) FROM ReferralEvent r " +
-            "     WHERE r.eventType = 'VERIFICATION' " +
-            "     AND r.occurredAt BETWEEN :start AND :end " +
-            "     AND r.referrerUserId = :userId)")
-    long countUsersAbove(@Param("userId") Long userId,
-                         @Param("start") Instant start,
-                         @Param("end") Instant end);
-
 }
 
 interface LeaderboardEntry {
@@ -74,13 +63,6 @@ interface LeaderboardEntry {
     Long getTotalReferrals();
 }
 
-interface LeaderboardProjection {
-    Long getReferrerUserId();
-    Long getTotalReferrals();
-    Long getSignups();
-    Long getVerifications();
-}
-
 interface UserRankProjection {
     Long getUserId();
     Long getVerifiedCount();
@@ -0,0 +1,80 @@
+package com.byys.backend_otp.referral;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * Keeps monthly {@code referral_events} partitions created ahead of time and expires old ones by
+ * detaching (and optionally dropping) whole partitions. Expiry never passes the rollup watermark,
+ * so all-time counts served from the rollups survive retention.
+ */
+@Component
+@Slf4j
+public class ReferralPartitionMaintainer {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ReferralRollupService rollupService;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final boolean dropExpired;
+
+    public ReferralPartitionMaintainer(JdbcTemplate jdbcTemplate,
+                                       TransactionTemplate transactionTemplate,
+                                       ReferralRollupService rollupService,
+                                       @Value("${referral.partitions.months-ahead:3}") int monthsAhead,
+                                       @Value("${referral.partitions.retention-months:0}") int retentionMonths,
+                                       @Value("${referral.partitions.drop-expired:false}") boolean dropExpired) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.rollupService = rollupService;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.dropExpired = dropExpired;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${referral.partitions.maintenance-cron:0 15 0 * * *}", zone = "UTC")
+    public void maintain() {
+        try {
+            LocalDate today = LocalDate.now(ZoneOffset.UTC);
+            Integer created = transactionTemplate.execute(status -> jdbcTemplate.queryForObject(
+                    "SELECT ensure_referral_events_partitions(?, ?)", Integer.class,
+                    Date.valueOf(today.withDayOfMonth(1)), monthsAhead));
+            if (created != null && created > 0) {
+                log.info("Created {} referral_events partitions", created);
+            }
+            if (retentionMonths > 0) {
+                expire(today);
+            }
+        } catch (RuntimeException e) {
+            log.error("referral_events partition maintenance failed", e);
+        }
+    }
+
+    private void expire(LocalDate today) {
+        LocalDate cutoff = today.withDayOfMonth(1).minusMonths(retentionMonths);
+        LocalDate rolledUpTo = LocalDate.ofInstant(rollupService.watermark(), ZoneOffset.UTC).withDayOfMonth(1);
+        if (rolledUpTo.isBefore(cutoff)) {
+            cutoff = rolledUpTo;
+        }
+        LocalDate effectiveCutoff = cutoff;
+        Integer expired = transactionTemplate.execute(status -> jdbcTemplate.queryForObject(
+                "SELECT expire_referral_events_partitions(?, ?)", Integer.class,
+                Date.valueOf(effectiveCutoff), dropExpired));
+        if (expired != null && expired > 0) {
+            log.info("{} {} referral_events partitions ending before {}",
+                    dropExpired ? "Dropped" : "Detached", expired, effectiveCutoff);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.byys.backend_otp.referral;
+
+import com.byys.backend_otp.user.UserCounter;
+import com.byys.backend_otp.user.UserCounterBuffer;
+import com.byys.backend_otp.user.UserReferralCount;
+import com.byys.backend_otp.user.UserRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Rank of every member by {@code verified_referrals_count}, answered from a Fenwick tree.
+ * Only members with at least one verified referral are tracked; everyone else scores zero.
+ * A periodic reload from {@code app_user}, plus the deltas still buffered in
+ * {@link UserCounterBuffer}, corrects drift, e.g. from verifications handled by another replica.
+ */
+@Component
+@Slf4j
+public class ReferralRankIndex {
+
+    private final UserRepository userRepository;
+    private final UserCounterBuffer userCounterBuffer;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> scores = new HashMap<>();
+    private final FenwickTree histogram = new FenwickTree(64);
+
+    public ReferralRankIndex(UserRepository userRepository, UserCounterBuffer userCounterBuffer) {
+        this.userRepository = userRepository;
+        this.userCounterBuffer = userCounterBuffer;
+    }
+
+    @PostConstruct
+    @Scheduled(initialDelayString = "${referral.rank.reconcile-interval:PT10M}",
+            fixedDelayString = "${referral.rank.reconcile-interval:PT10M}")
+    public void reconcile() {
+        lock.writeLock().lock();
+        try {
+            // Snapshot under the write lock: a verification counted into the buffer during the read
+            // would otherwise be in neither the snapshot nor the rebuilt scores until the next run
+            Map<Long, Integer> counts = userCounterBuffer.withFlushPaused(() -> {
+                Map<Long, Integer> current = new HashMap<>();
+                for (UserReferralCount count : userRepository.findByVerifiedReferralsCountGreaterThan(0)) {
+                    current.put(count.getId(), count.getVerifiedReferralsCount());
+                }
+                userCounterBuffer.pending(UserCounter.VERIFIED_REFERRALS)
+                        .forEach((userId, delta) -> current.merge(userId, delta.intValue(), Integer::sum));
+                return current;
+            });
+            int corrected = 0;
+            Map<Long, Integer> previous = new HashMap<>(scores);
+            scores.clear();
+            histogram.clear();
+            for (Map.Entry<Long, Integer> count : counts.entrySet()) {
+                if (count.getValue() <= 0) {
+                    continue;
+                }
+                scores.put(count.getKey(), count.getValue());
+                histogram.add(count.getValue(), 1);
+                if (!previous.getOrDefault(count.getKey(), 0).equals(count.getValue())) {
+                    corrected++;
+                }
+            }
+            log.debug("Rank index reconciled: {} members, {} corrected", scores.size(), corrected);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onReferralEvent(ReferralEventRecorded event) {
+        if (event.eventType() == ReferralEventType.VERIFICATION) {
+            increment(event.referrerUserId());
+        }
+    }
+
+    /**
+     * Counts one verified referral in both the buffered counter and the index, under the same lock
+     * as the reconcile snapshot, so a verification is either in the snapshot or applied after it.
+     */
+    public void increment(Long userId) {
+        lock.writeLock().lock();
+        try {
+            userCounterBuffer.increment(userId, UserCounter.VERIFIED_REFERRALS);
+            int previous = scores.getOrDefault(userId, 0);
+            if (previous > 0) {
+                histogram.add(previous, -1);
+            }
+            scores.put(userId, previous + 1);
+            histogram.add(previous + 1, 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** 1 + number of members with strictly more verified referrals. */
+    public int rank(Long userId) {
+        lock.readLock().lock();
+        try {
+            return (int) (histogram.countAbove(scores.getOrDefault(userId, 0)) + 1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
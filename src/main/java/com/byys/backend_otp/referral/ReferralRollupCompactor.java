@@ -0,0 +1,94 @@
+package com.byys.backend_otp.referral;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Folds raw referral events into the hourly and daily rollups. Each pass takes whole hours between
+ * the stored watermark and {@code now - lag}; the lag leaves room for transactions and ingest
+ * batches that commit slightly after their {@code occurred_at}. The watermark row is locked for the
+ * duration of a pass, so replicas never fold the same hour twice.
+ */
+@Component
+@Slf4j
+public class ReferralRollupCompactor {
+
+    private static final String FOLD_SQL =
+            "INSERT INTO %1$s (bucket_start, referrer_user_id, event_type, event_count, distinct_referred) " +
+            "SELECT date_trunc('%2$s', occurred_at, 'UTC'), referrer_user_id, event_type, " +
+            "COUNT(*), COUNT(DISTINCT referred_user_id) " +
+            "FROM referral_events WHERE occurred_at >= ? AND occurred_at < ? " +
+            "GROUP BY 1, 2, 3 " +
+            "ON CONFLICT (bucket_start, referrer_user_id, event_type) DO UPDATE SET " +
+            "event_count = %1$s.event_count + EXCLUDED.event_count, " +
+            "distinct_referred = %1$s.distinct_referred + EXCLUDED.distinct_referred";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ReferralRollupService rollupService;
+    private final Duration lag;
+    private final Duration maxStep;
+
+    public ReferralRollupCompactor(JdbcTemplate jdbcTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   ReferralRollupService rollupService,
+                                   @Value("${referral.rollup.lag-minutes:2}") long lagMinutes,
+                                   @Value("${referral.rollup.max-step-hours:24}") long maxStepHours) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.rollupService = rollupService;
+        this.lag = Duration.ofMinutes(lagMinutes);
+        this.maxStep = Duration.ofHours(maxStepHours);
+    }
+
+    @Scheduled(initialDelayString = "PT30S", fixedDelayString = "${referral.rollup.compact-interval:PT1M}")
+    public void compact() {
+        Instant target = Instant.now().minus(lag).truncatedTo(ChronoUnit.HOURS);
+        try {
+            Instant reached;
+            do {
+                reached = transactionTemplate.execute(status -> foldOnePass(target));
+            } while (reached != null && reached.isBefore(target));
+        } catch (RuntimeException e) {
+            log.error("Referral rollup compaction failed", e);
+        } finally {
+            rollupService.refreshWatermark();
+        }
+    }
+
+    // Returns the new watermark, or null when there was nothing to fold
+    private Instant foldOnePass(Instant target) {
+        Timestamp stored = jdbcTemplate.queryForObject(
+                "SELECT watermark FROM referral_rollup_state WHERE name = 'referral_events' FOR UPDATE",
+                Timestamp.class);
+        Instant from = stored.toInstant();
+        if (!from.isBefore(target)) {
+            return null;
+        }
+        if (from.equals(Instant.EPOCH)) {
+            // First run: skip straight to the oldest event instead of walking from 1970
+            Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(occurred_at) FROM referral_events", Timestamp.class);
+            from = oldest != null ? oldest.toInstant().truncatedTo(ChronoUnit.HOURS) : target;
+        }
+        Instant to = from.plus(maxStep).isBefore(target) ? from.plus(maxStep) : target;
+
+        long started = System.nanoTime();
+        Timestamp fromTs = Timestamp.from(from);
+        Timestamp toTs = Timestamp.from(to);
+        int hourly = jdbcTemplate.update(FOLD_SQL.formatted("referral_rollup_hourly", "hour"), fromTs, toTs);
+        jdbcTemplate.update(FOLD_SQL.formatted("referral_rollup_daily", "day"), fromTs, toTs);
+        jdbcTemplate.update("UPDATE referral_rollup_state SET watermark = ? WHERE name = 'referral_events'", toTs);
+        log.debug("Folded referral events [{}, {}) into {} hourly buckets in {} ms",
+                from, to, hourly, (System.nanoTime() - started) / 1_000_000);
+        return to;
+    }
+}
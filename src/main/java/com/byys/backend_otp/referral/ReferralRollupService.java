@@ -0,0 +1,111 @@
+package com.byys.backend_otp.referral;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Referral counts answered from the hourly/daily rollups plus the raw events that the compactor
+ * has not folded in yet, so query cost follows the window size rather than total event volume.
+ * Distinct referred users are summed across buckets, which is exact because a referred user has at
+ * most one SIGNUP and one VERIFICATION event.
+ */
+@Service
+public class ReferralRollupService {
+
+    static final Instant FAR_FUTURE = Instant.parse("9999-01-01T00:00:00Z");
+
+    private static final String SEGMENTED_ROWS =
+            "SELECT referrer_user_id, event_type, event_count, distinct_referred FROM referral_rollup_daily " +
+            "WHERE bucket_start >= :dailyFrom AND bucket_start < :dailyTo %1$s " +
+            "UNION ALL " +
+            "SELECT referrer_user_id, event_type, event_count, distinct_referred FROM referral_rollup_hourly " +
+            "WHERE ((bucket_start >= :hourlyHeadFrom AND bucket_start < :hourlyHeadTo) " +
+            "    OR (bucket_start >= :hourlyTailFrom AND bucket_start < :hourlyTailTo)) %1$s " +
+            "UNION ALL " +
+            "SELECT referrer_user_id, event_type, 1, CASE WHEN referred_user_id IS NULL THEN 0 ELSE 1 END " +
+            "FROM referral_events " +
+            "WHERE ((occurred_at >= :rawHeadFrom AND occurred_at < :rawHeadTo) " +
+            "    OR (occurred_at >= :rawTailFrom AND occurred_at < :rawTailTo)) %1$s";
+
+    private static final String WINDOW_STATS_SQL =
+            "SELECT referrer_user_id, " +
+            "SUM(CASE WHEN event_type = 'SIGNUP' THEN distinct_referred ELSE 0 END) AS signups, " +
+            "SUM(CASE WHEN event_type = 'VERIFICATION' THEN distinct_referred ELSE 0 END) AS verifications " +
+            "FROM (" + SEGMENTED_ROWS.formatted("AND event_type IN ('SIGNUP', 'VERIFICATION')") + ") s " +
+            "GROUP BY referrer_user_id";
+
+    private static final String REFERRER_COUNT_SQL =
+            "SELECT COALESCE(SUM(event_count), 0) AS events, COALESCE(SUM(distinct_referred), 0) AS referred " +
+            "FROM (" + SEGMENTED_ROWS.formatted("AND referrer_user_id = :referrerUserId AND event_type = :eventType") + ") s";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private volatile Instant watermark = Instant.EPOCH;
+
+    public ReferralRollupService(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    void loadWatermark() {
+        refreshWatermark();
+    }
+
+    public void refreshWatermark() {
+        Timestamp current = jdbcTemplate.getJdbcTemplate().queryForObject(
+                "SELECT watermark FROM referral_rollup_state WHERE name = 'referral_events'", Timestamp.class);
+        if (current != null) {
+            watermark = current.toInstant();
+        }
+    }
+
+    public Instant watermark() {
+        return watermark;
+    }
+
+    /** Signups and verifications per referrer for events in [start, end). */
+    public List<ReferrerWindowStats> windowStats(Instant start, Instant end) {
+        return jdbcTemplate.query(WINDOW_STATS_SQL, segmentParams(start, end), (rs, rowNum) ->
+                new ReferrerWindowStats(
+                        rs.getLong("referrer_user_id"),
+                        rs.getLong("signups"),
+                        rs.getLong("verifications")
+                ));
+    }
+
+    public long countEvents(Long referrerUserId, ReferralEventType eventType) {
+        return countForReferrer(referrerUserId, eventType, "events");
+    }
+
+    public long countVerifiedReferrals(Long referrerUserId) {
+        return countForReferrer(referrerUserId, ReferralEventType.VERIFICATION, "referred");
+    }
+
+    private long countForReferrer(Long referrerUserId, ReferralEventType eventType, String column) {
+        MapSqlParameterSource params = segmentParams(Instant.EPOCH, FAR_FUTURE)
+                .addValue("referrerUserId", referrerUserId)
+                .addValue("eventType", eventType.name());
+        Long count = jdbcTemplate.queryForObject(REFERRER_COUNT_SQL, params, (rs, rowNum) -> rs.getLong(column));
+        return count != null ? count : 0;
+    }
+
+    private MapSqlParameterSource segmentParams(Instant start, Instant end) {
+        RollupSegments segments = RollupSegments.of(start, end, watermark);
+        return new MapSqlParameterSource()
+                .addValue("rawHeadFrom", Timestamp.from(segments.rawHeadFrom()))
+                .addValue("rawHeadTo", Timestamp.from(segments.rawHeadTo()))
+                .addValue("hourlyHeadFrom", Timestamp.from(segments.hourlyHeadFrom()))
+                .addValue("hourlyHeadTo", Timestamp.from(segments.hourlyHeadTo()))
+                .addValue("dailyFrom", Timestamp.from(segments.dailyFrom()))
+                .addValue("dailyTo", Timestamp.from(segments.dailyTo()))
+                .addValue("hourlyTailFrom", Timestamp.from(segments.hourlyTailFrom()))
+                .addValue("hourlyTailTo", Timestamp.from(segments.hourlyTailTo()))
+                .addValue("rawTailFrom", Timestamp.from(segments.rawTailFrom()))
+                .addValue("rawTailTo", Timestamp.from(segments.rawTailTo()));
+    }
+}
@@ -1,41 +1,46 @@
 package com.byys.backend_otp.referral;
 
-import com.byys.backend_otp.user.User;
-import com.byys.backend_otp.user.UserRepository;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Instant;
-import java.util.List;
-import java.util.UUID;
+import java.util.Optional;
 
 @Service
 @Slf4j
 public class ReferralTrackingService {
 
-    private final ReferralEventRepository referralEventRepository;
-    private final UserRepository userRepository;
-
-    public ReferralTrackingService(ReferralEventRepository referralEventRepository,
-                                   UserRepository userRepository) {
-        this.referralEventRepository = referralEventRepository;
-        this.userRepository = userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ReferralRankIndex referralRankIndex;
+    private final ReferralEventIngestor referralEventIngestor;
+    private final ReferralEventClaims referralEventClaims;
+    private final ReferralCodeIndex referralCodeIndex;
+
+    public ReferralTrackingService(ApplicationEventPublisher eventPublisher,
+                                   ReferralRankIndex referralRankIndex,
+                                   ReferralEventIngestor referralEventIngestor,
+                                   ReferralEventClaims referralEventClaims,
+                                   ReferralCodeIndex referralCodeIndex) {
+        this.eventPublisher = eventPublisher;
+        this.referralRankIndex = referralRankIndex;
+        this.referralEventIngestor = referralEventIngestor;
+        this.referralEventClaims = referralEventClaims;
+        this.referralCodeIndex = referralCodeIndex;
     }
 
-    public String generateShareLink(User user, String baseUrl, String source) {
+    public String generateShareLink(Long userId, String referralCode, String baseUrl, String source) {
         // Track share event
-        trackShareEvent(user, source, null);
+        trackShareEvent(userId, source, null);
 
         // Generate unique tracking link
-        return baseUrl + "?ref=" + user.getReferralCode() +
+        return baseUrl + "?ref=" + referralCode +
                 (source != null ? "&source=" + source : "");
     }
 
-    @Transactional
-    public void trackShareEvent(User user, String source, HttpServletRequest request) {
-        ReferralEvent event = new ReferralEvent(user.getId(), ReferralEventType.SHARE);
+    public boolean trackShareEvent(Long userId, String source, HttpServletRequest request) {
+        ReferralEvent event = new ReferralEvent(userId, ReferralEventType.SHARE);
 
         if (request != null) {
             event.setUserAgent(request.getHeader("User-Agent"));
@@ -46,98 +51,56 @@ public class ReferralTrackingService {
             event.setReferralSource(source);
         }
 
-        referralEventRepository.save(event);
+        return referralEventIngestor.submit(event);
     }
 
-    @Transactional
-    public void trackClickEvent(String referralCode, String source, HttpServletRequest request) {
-        User referrer = userRepository.findByReferralCode(referralCode)
-                .orElseThrow(() -> new RuntimeException("Invalid referral code"));
-
-        ReferralEvent event = new ReferralEvent(referrer.getId(), ReferralEventType.LINK_CLICK);
+    public boolean trackClickEvent(Long referrerUserId, String source, HttpServletRequest request) {
+        ReferralEvent event = new ReferralEvent(referrerUserId, ReferralEventType.LINK_CLICK);
 
         if (request != null) {
             event.setUserAgent(request.getHeader("User-Agent"));
             event.setIpAddress(request.getRemoteAddr());
-
-            // Store cookie for attribution if user signs up later
-            String clickId = UUID.randomUUID().toString();
-            // In practice, you'd set this in the response cookie
         }
 
         if (source != null) {
             event.setReferralSource(source);
         }
 
-        referralEventRepository.save(event);
+        return referralEventIngestor.submit(event);
     }
 
+    /**
+     * Records the SIGNUP once per referred user, attributed to the share link's {@code source} when
+     * the sign-up came through one. Returns false when the code is unknown or is the new member's own.
+     */
     @Transactional
-    public void trackSignupEvent(Long referredUserId, String referralCode) {
-        User referrer = userRepository.findByReferralCode(referralCode)
-                .orElseThrow(() -> new RuntimeException("Invalid referral code"));
+    public boolean trackSignupEvent(Long referredUserId, String referralCode, String source) {
+        // Never the rate-limited lookup: a code minted on another node moments ago must still count
+        Optional<Long> referrerId = referralCodeIndex.resolve(referralCode);
 
-        // Prevent self-referral
-        if (referrer.getId().equals(referredUserId)) {
-            throw new IllegalArgumentException("Self-referrals are not allowed");
+        // Unknown code or self-referral
+        if (referrerId.isEmpty() || referrerId.get().equals(referredUserId)) {
+            return false;
         }
 
-        // Ensure we don't duplicate events
-        if (!referralEventRepository.existsByReferredUserIdAndEventType(referredUserId, ReferralEventType.SIGNUP)) {
-            ReferralEvent event = new ReferralEvent(referrer.getId(), ReferralEventType.SIGNUP);
-            event.setReferredUserId(referredUserId);
-            referralEventRepository.save(event);
-        }
+        referralEventClaims.claimSignup(referrerId.get(), referredUserId, source)
+                .ifPresent(eventPublisher::publishEvent);
+        return true;
     }
 
     public int getUserRank(Long userId) {
-        User user = userRepository.findById(userId)
-                .orElseThrow(() -> new IllegalArgumentException("User not found"));
-
-        if (user.getVerifiedReferralsCount() == 0) {
-            return (int) (userRepository.countByVerifiedReferralsCountGreaterThan(0) + 1);
-        }
-
-        return (int) (userRepository.countByVerifiedReferralsCountGreaterThan(
-                        user.getVerifiedReferralsCount()
-                ) + 1);
+        return referralRankIndex.rank(userId);
     }
 
+    /**
+     * Records the VERIFICATION once per referred user, credited to the referrer of their SIGNUP.
+     * Returns whether this call recorded it.
+     */
     @Transactional
-    public void trackVerificationEvent(Long referredUserId) {
-        // First verify the user exists
-        User referredUser = userRepository.findById(referredUserId)
-                .orElseThrow(() -> new IllegalArgumentException("Referred user not found"));
-
-        // Find the original signup event
-        referralEventRepository.findByReferredUserIdAndEventType(referredUserId, ReferralEventType.SIGNUP)
-                .ifPresentOrElse(
-                        signupEvent -> {
-                            // Verify the referrer exists
-                            User referrer = userRepository.findById(signupEvent.getReferrerUserId())
-                                    .filter(r -> !r.getId().equals(referredUserId))
-                                    .orElseThrow(() -> new IllegalStateException("Invalid referrer"));
-
-                            // Prevent self-referral (additional safety check)
-                            if (referrer.getId().equals(referredUserId)) {
-                                throw new IllegalStateException("Self-referral detected");
-                            }
-                            if (!referralEventRepository.existsByReferredUserIdAndEventType(
-                                    referredUserId, ReferralEventType.VERIFICATION)) {
-
-                                ReferralEvent event = new ReferralEvent(
-                                        referrer.getId(),
-                                        ReferralEventType.VERIFICATION
-                                );
-                                event.setReferredUserId(referredUserId);
-                                referralEventRepository.save(event);
-
-                                // Update referrer's stats if needed
-                                referrer.incrementVerifiedReferrals();
-                                userRepository.save(referrer);
-                            }
-                        },
-                        () -> log.warn("No signup event found for user {}", referredUserId)
-                );
+    public boolean trackVerificationEvent(Long referredUserId) {
+        // The referrer's verified count is bumped by ReferralCounterUpdater once this commits
+        Optional<ReferralEventRecorded> recorded = referralEventClaims.claimVerification(referredUserId);
+        recorded.ifPresent(eventPublisher::publishEvent);
+        return recorded.isPresent();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,4 @@
+package com.byys.backend_otp.referral;
+
+public record ReferrerWindowStats(long referrerUserId, long signups, long verifications) {
+}
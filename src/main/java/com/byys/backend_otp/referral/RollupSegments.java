@@ -0,0 +1,37 @@
+package com.byys.backend_otp.referral;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Splits a half-open window [start, end) into the pieces answered by each source: raw events
+ * before the first whole hour, hourly rollups up to the first whole day, daily rollups, hourly
+ * rollups for the trailing partial day, and raw events from the rollup watermark onwards.
+ * Empty pieces have {@code from == to}.
+ */
+record RollupSegments(Instant rawHeadFrom, Instant rawHeadTo,
+                      Instant hourlyHeadFrom, Instant hourlyHeadTo,
+                      Instant dailyFrom, Instant dailyTo,
+                      Instant hourlyTailFrom, Instant hourlyTailTo,
+                      Instant rawTailFrom, Instant rawTailTo) {
+
+    static RollupSegments of(Instant start, Instant end, Instant watermark) {
+        Instant rolledEnd = end.isBefore(watermark) ? end : watermark;
+        Instant h0 = ceil(start, ChronoUnit.HOURS);
+        Instant h1 = rolledEnd.truncatedTo(ChronoUnit.HOURS);
+        if (!h1.isAfter(h0)) {
+            return new RollupSegments(start, start, start, start, start, start, start, start, start, end);
+        }
+        Instant d0 = ceil(h0, ChronoUnit.DAYS);
+        Instant d1 = h1.truncatedTo(ChronoUnit.DAYS);
+        if (!d1.isAfter(d0)) {
+            return new RollupSegments(start, h0, h0, h1, h1, h1, h1, h1, h1, end);
+        }
+        return new RollupSegments(start, h0, h0, d0, d0, d1, d1, h1, h1, end);
+    }
+
+    private static Instant ceil(Instant instant, ChronoUnit unit) {
+        Instant floor = instant.truncatedTo(unit);
+        return floor.equals(instant) ? floor : floor.plus(1, unit);
+    }
+}
@@ -1,31 +1,28 @@
 package com.byys.backend_otp.security;
 
+import com.byys.backend_otp.user.UserCache;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.http.HttpHeaders;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.User;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
+    private final UserCache userCache;
 
-    public JwtAuthenticationFilter(JwtService jwtService) {
+    public JwtAuthenticationFilter(JwtService jwtService, UserCache userCache) {
         this.jwtService = jwtService;
+        this.userCache = userCache;
     }
 
     @Override
@@ -36,21 +33,20 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             String token = header.substring(7);
             JwtService.JwtVerificationResult result = jwtService.verify(token);
             if (result.valid()) {
-                // Create authorities based on role
-                List<GrantedAuthority> authorities = new ArrayList<>();
-                if (result.role() != null) {
-                    authorities.add(new SimpleGrantedAuthority("ROLE_" + result.role()));
+                Long userId = result.userId();
+                if (userId == null) {
+                    // Token issued before the uid claim: resolve once through the cache
+                    userId = userCache.idForPhone(result.subject()).orElse(null);
+                }
+                if (userId != null) {
+                    AuthenticatedUser principal = new AuthenticatedUser(userId, result.subject(), result.role());
+                    UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(
+                            principal, null, principal.getAuthorities());
+                    auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                    SecurityContextHolder.getContext().setAuthentication(auth);
                 }
-
-                User principal = new User(result.subject(), "", authorities);
-                UsernamePasswordAuthenticationToken auth = new UsernamePasswordAuthenticationToken(
-                        principal, null, principal.getAuthorities());
-                auth.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-                SecurityContextHolder.getContext().setAuthentication(auth);
             }
         }
         filterChain.doFilter(request, response);
     }
 }
-
-
@@ -1,38 +1,75 @@
 package com.byys.backend_otp.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Date;
 
+/**
+ * Issues and verifies JWTs. Verification uses one shared parser, and tokens that verified are
+ * remembered under their SHA-256 digest until their {@code exp}, so a token presented on every
+ * request is only signature-checked and parsed once. Rejected tokens are never cached.
+ */
 @Service
 public class JwtService {
 
+    private static final JwtVerificationResult INVALID = new JwtVerificationResult(false, null, null, null);
+
     private final SecretKey key;
     private final String issuer;
     private final long expirationMinutes;
+    private final JwtParser parser;
+    private final Cache<TokenDigest, VerifiedToken> verified;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Counter rejections;
 
     public JwtService(
         @Value("${security.jwt.secret}") String secret,
         @Value("${security.jwt.issuer}") String issuer,
-        @Value("${security.jwt.expiration-minutes}") long expirationMinutes
+        @Value("${security.jwt.expiration-minutes}") long expirationMinutes,
+        @Value("${security.jwt.cache.max-size:100000}") long cacheMaxSize,
+        MeterRegistry meterRegistry
     ) {
         this.key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
         this.issuer = issuer;
         this.expirationMinutes = expirationMinutes;
+        this.parser = Jwts.parser().verifyWith(key).requireIssuer(issuer).build();
+        this.verified = cacheMaxSize > 0
+                ? Caffeine.newBuilder()
+                    .maximumSize(cacheMaxSize)
+                    .expireAfter(Expiry.<TokenDigest, VerifiedToken>creating((digest, token) ->
+                            Duration.ofMillis(Math.max(0, token.expiresAtMillis() - System.currentTimeMillis()))))
+                    .build()
+                : null;
+        this.cacheHits = meterRegistry.counter("security.jwt.verifications", "result", "cache_hit");
+        this.cacheMisses = meterRegistry.counter("security.jwt.verifications", "result", "cache_miss");
+        this.rejections = meterRegistry.counter("security.jwt.verifications", "result", "rejected");
     }
 
-    public String generate(String subject, String role) {
+    public String generate(Long userId, String subject, String role) {
         Instant now = Instant.now();
         Instant exp = now.plusSeconds(expirationMinutes * 60);
         return Jwts.builder()
                 .subject(subject)
                 .issuer(issuer)
+                .claim("uid", userId)
                 .claim("role", role) // Add role claim
                 .issuedAt(Date.from(now))
                 .expiration(Date.from(exp))
@@ -41,22 +78,54 @@ public class JwtService {
     }
 
     public JwtVerificationResult verify(String token) {
-        try {
-            var parsed = Jwts.parser().verifyWith(key).build().parseSignedClaims(token);
-            String subject = parsed.getPayload().getSubject();
-            String tokenIssuer = parsed.getPayload().getIssuer();
-            String role = parsed.getPayload().get("role", String.class); // Extract role
+        if (verified == null) {
+            return parse(token).result();
+        }
+        TokenDigest digest = TokenDigest.of(token);
+        VerifiedToken cached = verified.getIfPresent(digest);
+        // Expiry runs lazily, so re-check exp rather than trusting presence alone
+        if (cached != null && cached.expiresAtMillis() > System.currentTimeMillis()) {
+            cacheHits.increment();
+            return cached.result();
+        }
+        cacheMisses.increment();
+        VerifiedToken parsed = parse(token);
+        if (parsed.result().valid() && parsed.expiresAtMillis() != Long.MAX_VALUE) {
+            verified.put(digest, parsed);
+        }
+        return parsed.result();
+    }
 
-            if (!issuer.equals(tokenIssuer)) {
-                return new JwtVerificationResult(false, null, null);
-            }
-            return new JwtVerificationResult(true, subject, role);
+    private VerifiedToken parse(String token) {
+        try {
+            Claims claims = parser.parseSignedClaims(token).getPayload();
+            String role = claims.get("role", String.class); // Extract role
+            // Absent on tokens issued before the claim was added
+            Long userId = claims.get("uid", Long.class);
+            Date expiration = claims.getExpiration();
+            return new VerifiedToken(new JwtVerificationResult(true, userId, claims.getSubject(), role),
+                    expiration != null ? expiration.getTime() : Long.MAX_VALUE);
         } catch (Exception e) {
-            return new JwtVerificationResult(false, null, null);
+            rejections.increment();
+            return new VerifiedToken(INVALID, 0);
         }
     }
 
-    public record JwtVerificationResult(boolean valid, String subject, String role) {}
-}
+    public record JwtVerificationResult(boolean valid, Long userId, String subject, String role) {}
 
+    private record VerifiedToken(JwtVerificationResult result, long expiresAtMillis) {}
 
+    /** SHA-256 of the compact token, held as four longs so the cache never keeps the bearer token itself. */
+    private record TokenDigest(long a, long b, long c, long d) {
+
+        static TokenDigest of(String token) {
+            try {
+                ByteBuffer digest = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256")
+                        .digest(token.getBytes(StandardCharsets.US_ASCII)));
+                return new TokenDigest(digest.getLong(), digest.getLong(), digest.getLong(), digest.getLong());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
 import jakarta.mail.internet.MimeMessage;
@@ -24,6 +25,13 @@ public class EmailService {
         this.mailSender = mailSender;
         this.templateEngine = templateEngine;
     }
+    // After commit and on the async executor, so a slow SMTP server never holds up registration or its connection
+    @Async
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onWelcomeEmailRequested(WelcomeEmailRequested event) {
+        sendWelcomeEmail(event.email(), event.fullName(), event.membershipId());
+    }
+
     @Async
     public void sendWelcomeEmail(String toEmail, String fullName, String membershipId) {
         Context context = new Context();
@@ -0,0 +1,5 @@
+package com.byys.backend_otp.service;
+
+/** Published during registration; the welcome email goes out only once the member has been committed. */
+public record WelcomeEmailRequested(String email, String fullName, String membershipId) {
+}
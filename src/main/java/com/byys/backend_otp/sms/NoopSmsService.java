@@ -2,18 +2,49 @@ package com.byys.backend_otp.sms;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logs instead of sending. {@code sms.noop.latency}, {@code sms.noop.latency-jitter} and
+ * {@code sms.noop.failure-rate} simulate a slow or flaky provider for offline load tests.
+ */
 @Service
 @ConditionalOnMissingBean(TwilioSmsService.class)
 public class NoopSmsService implements SmsService {
     private static final Logger log = LoggerFactory.getLogger(NoopSmsService.class);
 
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double failureRate;
+
+    public NoopSmsService(@Value("${sms.noop.latency:PT0S}") Duration latency,
+                          @Value("${sms.noop.latency-jitter:PT0S}") Duration jitter,
+                          @Value("${sms.noop.failure-rate:0.0}") double failureRate) {
+        this.latencyMillis = latency.toMillis();
+        this.jitterMillis = jitter.toMillis();
+        this.failureRate = failureRate;
+    }
+
     @Override
     public void sendOtp(String phoneE164, String message) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = latencyMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0);
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while simulating SMS latency", e);
+            }
+        }
+        if (failureRate > 0 && random.nextDouble() < failureRate) {
+            throw new RuntimeException("Simulated SMS provider failure");
+        }
         log.info("[NOOP SMS] to={} message={}", phoneE164, message);
     }
 }
-
-
@@ -0,0 +1,218 @@
+package com.byys.backend_otp.sms;
+
+import com.byys.backend_otp.util.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends SMS off the request thread. Messages wait in a bounded queue drained by a pool of worker
+ * threads sized for blocking provider calls. A failed send is retried with full-jitter exponential
+ * backoff until it runs out of attempts or outlives {@code max-age} (an OTP nobody can use any
+ * more). Consecutive failures open a circuit breaker; while it is open new messages are refused
+ * so callers can answer 503 instead of queueing work that will fail. When the open period ends,
+ * the next message is accepted and becomes the trial call.
+ */
+@Component
+@Slf4j
+public class SmsDispatcher {
+
+    private final SmsService smsService;
+    private final BlockingQueue<SmsMessage> queue;
+    private final CircuitBreaker circuitBreaker;
+    private final ScheduledExecutorService retryScheduler;
+    private final List<Thread> workers = new ArrayList<>();
+    private final int maxAttempts;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final long maxAgeNanos;
+    private final Timer sendTimer;
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter failed;
+    private final Counter rejected;
+    private final Counter expired;
+    private volatile boolean running = true;
+
+    public SmsDispatcher(SmsService smsService,
+                         MeterRegistry meterRegistry,
+                         @Value("${sms.dispatch.capacity:1000}") int capacity,
+                         @Value("${sms.dispatch.workers:16}") int workerCount,
+                         @Value("${sms.dispatch.max-attempts:4}") int maxAttempts,
+                         @Value("${sms.dispatch.initial-backoff:PT0.5S}") Duration initialBackoff,
+                         @Value("${sms.dispatch.max-backoff:PT10S}") Duration maxBackoff,
+                         @Value("${sms.dispatch.max-age:PT2M}") Duration maxAge,
+                         @Value("${sms.dispatch.breaker.failure-threshold:10}") int failureThreshold,
+                         @Value("${sms.dispatch.breaker.open-duration:PT30S}") Duration openDuration,
+                         @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.smsService = smsService;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openDuration);
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffNanos = initialBackoff.toNanos();
+        this.maxBackoffNanos = maxBackoff.toNanos();
+        this.maxAgeNanos = maxAge.toNanos();
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sms-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Thread.Builder workerThreads = virtualThreads
+                ? Thread.ofVirtual().name("sms-dispatch-", 0)
+                : Thread.ofPlatform().daemon().name("sms-dispatch-", 0);
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(workerThreads.unstarted(this::run));
+        }
+
+        Gauge.builder("sms.dispatch.queue.depth", queue, BlockingQueue::size)
+                .description("SMS messages waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("sms.dispatch.circuit.open", circuitBreaker, breaker -> breaker.state() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .description("1 while the SMS provider circuit breaker is open or half-open")
+                .register(meterRegistry);
+        this.sendTimer = Timer.builder("sms.dispatch.send")
+                .description("Latency of one SMS provider call")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.sent = meterRegistry.counter("sms.dispatch.messages", "outcome", "sent");
+        this.retried = meterRegistry.counter("sms.dispatch.messages", "outcome", "retried");
+        this.failed = meterRegistry.counter("sms.dispatch.messages", "outcome", "failed");
+        this.rejected = meterRegistry.counter("sms.dispatch.messages", "outcome", "rejected");
+        this.expired = meterRegistry.counter("sms.dispatch.messages", "outcome", "expired");
+    }
+
+    @PostConstruct
+    void start() {
+        workers.forEach(Thread::start);
+    }
+
+    /**
+     * Whether {@link #dispatch} would currently take a message: running, breaker closed or past its
+     * open period, queue not full.
+     */
+    public boolean isAccepting() {
+        return running && circuitBreaker.isCallPermitted() && queue.remainingCapacity() > 0;
+    }
+
+    /** Time a refused caller should wait before trying again. */
+    public Duration retryAfter() {
+        Duration open = circuitBreaker.remainingOpen();
+        return open.isZero() ? Duration.ofSeconds(1) : open;
+    }
+
+    /** Queues a message without blocking. Returns {@code false} when it was refused. */
+    public boolean dispatch(String phoneE164, String message) {
+        // Once the open period is over the message is accepted and a worker sends it as the trial call
+        if (!running || !circuitBreaker.isCallPermitted()
+                || !queue.offer(new SmsMessage(phoneE164, message, System.nanoTime(), 1))) {
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                SmsMessage message = queue.poll(1, TimeUnit.SECONDS);
+                if (message != null) {
+                    send(message);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("SMS dispatch loop failed", e);
+            }
+        }
+    }
+
+    private void send(SmsMessage message) {
+        if (System.nanoTime() - message.enqueuedAt() > maxAgeNanos) {
+            expired.increment();
+            log.warn("Dropping SMS to {} after {} attempt(s): too old to be useful", mask(message.phone()), message.attempt() - 1);
+            return;
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            // Hold the message until the breaker allows a trial call; this does not use up an attempt
+            schedule(message, Math.max(circuitBreaker.remainingOpen().toNanos(), initialBackoffNanos));
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            smsService.sendOtp(message.phone(), message.body());
+            circuitBreaker.onSuccess();
+            sent.increment();
+        } catch (RuntimeException e) {
+            circuitBreaker.onFailure();
+            if (message.attempt() >= maxAttempts) {
+                failed.increment();
+                log.error("Giving up on SMS to {} after {} attempts", mask(message.phone()), message.attempt(), e);
+                return;
+            }
+            retried.increment();
+            log.warn("SMS to {} failed on attempt {}: {}", mask(message.phone()), message.attempt(), e.getMessage());
+            schedule(message.nextAttempt(), backoffNanos(message.attempt()));
+        } finally {
+            sendTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private long backoffNanos(int attempt) {
+        long ceiling = Math.min(maxBackoffNanos, initialBackoffNanos << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+    }
+
+    private void schedule(SmsMessage message, long delayNanos) {
+        if (!running) {
+            failed.increment();
+            return;
+        }
+        retryScheduler.schedule(() -> {
+            if (!queue.offer(message)) {
+                failed.increment();
+                log.error("Dropping SMS to {}: dispatch queue full on retry", mask(message.phone()));
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static String mask(String phone) {
+        return phone.length() <= 4 ? "****" : "****" + phone.substring(phone.length() - 4);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        retryScheduler.shutdownNow();
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        log.info("SMS dispatcher stopped with {} message(s) undelivered", queue.size());
+    }
+
+    private record SmsMessage(String phone, String body, long enqueuedAt, int attempt) {
+        SmsMessage nextAttempt() {
+            return new SmsMessage(phone, body, enqueuedAt, attempt + 1);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.byys.backend_otp.user;
+
+import java.time.Instant;
+
+/** The identity fields of a {@link User}, which are fixed at registration and so safe to cache. */
+public record CachedUser(Long id, String phone, String fullName, String referralCode, Instant createdAt) {
+
+    public static CachedUser of(User user) {
+        return new CachedUser(user.getId(), user.getPhone(), user.getFullName(), user.getReferralCode(), user.getCreatedAt());
+    }
+}
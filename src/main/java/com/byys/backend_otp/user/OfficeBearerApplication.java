@@ -8,6 +8,9 @@ import lombok.Setter;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_ob_app_approved_applied", columnList = "approved, appliedAt DESC, id DESC")
+})
 @Getter
 @Setter
 @NoArgsConstructor
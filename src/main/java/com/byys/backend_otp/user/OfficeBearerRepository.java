@@ -1,9 +1,14 @@
 package com.byys.backend_otp.user;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 public interface OfficeBearerRepository extends JpaRepository<OfficeBearerApplication,Long> {
@@ -11,6 +16,20 @@ public interface OfficeBearerRepository extends JpaRepository<OfficeBearerApplic
 
     Page<OfficeBearerApplication> findByApprovedFalse(Pageable pageable);
 
+    List<OfficeBearerApplication> findByApprovedOrderByAppliedAtDescIdDesc(Boolean approved, Limit limit);
+
+    @Query("SELECT a FROM OfficeBearerApplication a " +
+            "WHERE a.approved = :approved " +
+            "AND a.appliedAt <= :appliedAt " +
+            "AND (a.appliedAt < :appliedAt OR a.id < :id) " +
+            "ORDER BY a.appliedAt DESC, a.id DESC")
+    List<OfficeBearerApplication> findByApprovedBefore(@Param("approved") Boolean approved,
+                                                       @Param("appliedAt") LocalDateTime appliedAt,
+                                                       @Param("id") Long id,
+                                                       Limit limit);
+
+    long countByApproved(Boolean approved);
+
     boolean existsByUserAndApprovedFalse(User user);
 
     boolean existsByUserAndApprovedTrue(User user);
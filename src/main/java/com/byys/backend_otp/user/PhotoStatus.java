@@ -0,0 +1,8 @@
+package com.byys.backend_otp.user;
+
+public enum PhotoStatus {
+    /** Upload staged, compressed copy not written yet. */
+    PENDING,
+    READY,
+    FAILED
+}
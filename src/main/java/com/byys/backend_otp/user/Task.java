@@ -8,6 +8,9 @@ import lombok.Setter;
 import java.time.LocalDateTime;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_task_created", columnList = "createdAt DESC, id DESC")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -1,13 +1,27 @@
 package com.byys.backend_otp.user;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 public interface TaskRepository extends JpaRepository<Task,Long> {
     List<Task> findByAssignedTo(User user);
 
+    List<Task> findAllByOrderByCreatedAtDescIdDesc(Limit limit);
+
+    @Query("SELECT t FROM Task t " +
+            "WHERE t.createdAt <= :createdAt " +
+            "AND (t.createdAt < :createdAt OR t.id < :id) " +
+            "ORDER BY t.createdAt DESC, t.id DESC")
+    List<Task> findAllBefore(@Param("createdAt") LocalDateTime createdAt,
+                             @Param("id") Long id,
+                             Limit limit);
+
 }
@@ -42,15 +42,18 @@ public class User {
     @Column(name = "last_login_at")
     private Instant lastLoginAt;
 
-    @Column(name = "verified_referrals_count", columnDefinition = "integer default 0")
+    // Counters are written only by UserCounterBuffer, so saving the entity never overwrites them
+    @Column(name = "verified_referrals_count", columnDefinition = "integer default 0", insertable = false, updatable = false)
     private int verifiedReferralsCount = 0;
 
+    @Column(name = "referral_signups_count", columnDefinition = "bigint default 0", insertable = false, updatable = false)
+    private long referralSignupsCount = 0;
+
+    @Column(name = "referral_shares_count", columnDefinition = "bigint default 0", insertable = false, updatable = false)
+    private long referralSharesCount = 0;
+
     @Column(name = "avatar_url")
     private String avatarUrl;
-
-    public void incrementVerifiedReferrals() {
-        this.verifiedReferralsCount++;
-    }
 }
 
 
@@ -0,0 +1,53 @@
+package com.byys.backend_otp.user;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Bounded cache of {@link CachedUser} by id, plus phone-to-id for tokens issued before they
+ * carried the user id. Handlers that only need an entity for a query or an association should
+ * use {@link UserRepository#getReferenceById} instead of loading the row.
+ */
+@Component
+public class UserCache {
+
+    private final UserRepository userRepository;
+    private final Cache<Long, CachedUser> byId;
+    private final Cache<String, Long> idByPhone;
+
+    public UserCache(UserRepository userRepository,
+                     @Value("${user.cache.max-size:50000}") long maxSize,
+                     @Value("${user.cache.ttl:PT10M}") Duration ttl) {
+        this.userRepository = userRepository;
+        this.byId = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).build();
+        this.idByPhone = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).build();
+    }
+
+    public Optional<CachedUser> get(Long userId) {
+        CachedUser cached = byId.getIfPresent(userId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return userRepository.findById(userId).map(this::put);
+    }
+
+    public Optional<Long> idForPhone(String phone) {
+        Long cached = idByPhone.getIfPresent(phone);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        return userRepository.findByPhone(phone).map(user -> put(user).id());
+    }
+
+    private CachedUser put(User user) {
+        CachedUser cached = CachedUser.of(user);
+        byId.put(cached.id(), cached);
+        idByPhone.put(cached.phone(), cached.id());
+        return cached;
+    }
+}
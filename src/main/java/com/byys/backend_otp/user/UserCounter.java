@@ -0,0 +1,18 @@
+package com.byys.backend_otp.user;
+
+/** Per-member counters kept on {@code app_user} and updated only through {@link UserCounterBuffer}. */
+public enum UserCounter {
+    VERIFIED_REFERRALS("verified_referrals_count"),
+    REFERRAL_SIGNUPS("referral_signups_count"),
+    REFERRAL_SHARES("referral_shares_count");
+
+    private final String column;
+
+    UserCounter(String column) {
+        this.column = column;
+    }
+
+    String column() {
+        return column;
+    }
+}
@@ -0,0 +1,123 @@
+package com.byys.backend_otp.user;
+
+import com.byys.backend_otp.util.StripedCounters;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind buffer for {@link UserCounter}s. Increments land in striped in-memory cells and are
+ * flushed every few seconds as {@code SET column = column + delta} batch updates, so concurrent
+ * increments for one member never race on a read-modify-write and never rewrite the rest of the
+ * row. Deltas not yet flushed are lost if the process dies; readers that need them can add
+ * {@link #pending}.
+ */
+@Component
+@Slf4j
+public class UserCounterBuffer {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<UserCounter, StripedCounters<Long>> counters = new EnumMap<>(UserCounter.class);
+    private final Counter flushedDeltas;
+    private final Counter failedFlushes;
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public UserCounterBuffer(JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate,
+                             MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        int stripes = Math.min(16, Runtime.getRuntime().availableProcessors());
+        for (UserCounter counter : UserCounter.values()) {
+            counters.put(counter, new StripedCounters<>(stripes));
+        }
+        this.flushedDeltas = meterRegistry.counter("user.counters.flushed");
+        this.failedFlushes = meterRegistry.counter("user.counters.flush.failures");
+        meterRegistry.gauge("user.counters.cells", counters,
+                all -> all.values().stream().mapToInt(StripedCounters::size).sum());
+    }
+
+    public void increment(Long userId, UserCounter counter) {
+        add(userId, counter, 1);
+    }
+
+    public void add(Long userId, UserCounter counter, long delta) {
+        counters.get(counter).add(userId, delta);
+    }
+
+    public long pending(Long userId, UserCounter counter) {
+        return counters.get(counter).pending(userId);
+    }
+
+    public Map<Long, Long> pending(UserCounter counter) {
+        return counters.get(counter).pending();
+    }
+
+    /**
+     * Runs {@code action} with flushing held off, so a database read inside it and
+     * {@link #pending} together count every delta exactly once.
+     */
+    public <T> T withFlushPaused(Supplier<T> action) {
+        flushLock.lock();
+        try {
+            return action.get();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${user.counters.flush-interval:PT2S}",
+            fixedDelayString = "${user.counters.flush-interval:PT2S}")
+    public void flush() {
+        // A lock rather than a monitor: the JDBC batch below must not pin a virtual thread's carrier
+        flushLock.lock();
+        try {
+            flushAll();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushAll() {
+        for (Map.Entry<UserCounter, StripedCounters<Long>> entry : counters.entrySet()) {
+            UserCounter counter = entry.getKey();
+            // Sorted by id so concurrent flushes from several instances lock rows in the same order
+            Map<Long, Long> deltas = new TreeMap<>();
+            entry.getValue().drain(deltas::put);
+            if (deltas.isEmpty()) {
+                continue;
+            }
+            List<Object[]> rows = new ArrayList<>(deltas.size());
+            deltas.forEach((userId, delta) -> rows.add(new Object[]{delta, userId}));
+            String sql = "UPDATE app_user SET %1$s = COALESCE(%1$s, 0) + ? WHERE id = ?".formatted(counter.column());
+            try {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(sql, rows));
+                flushedDeltas.increment(rows.size());
+            } catch (RuntimeException e) {
+                // Put the deltas back so the next flush retries them
+                deltas.forEach((userId, delta) -> add(userId, counter, delta));
+                failedFlushes.increment();
+                log.error("Flushing {} {} deltas failed", rows.size(), counter, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+}
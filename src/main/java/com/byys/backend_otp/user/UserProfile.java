@@ -5,6 +5,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.Date;
 
@@ -22,6 +23,19 @@ public class UserProfile {
     private User user;
 
     private String photoPath; // Store path to compressed image
+
+    // Content hash of the photo in PhotoStore, served from /photos/{key}
+    @Column(name = "photo_key", length = 64)
+    private String photoKey;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "photo_status", length = 16)
+    private PhotoStatus photoStatus;
+
+    // When the upload was staged; lets any node tell a stale PENDING photo from one staged on another node
+    @Column(name = "photo_staged_at")
+    private Instant photoStagedAt;
+
     private Integer age;
     private String whatsappNumber;
     private String email;
@@ -0,0 +1,9 @@
+package com.byys.backend_otp.user;
+
+import java.time.Instant;
+
+public interface UserReferralCode {
+    Long getId();
+    String getReferralCode();
+    Instant getCreatedAt();
+}
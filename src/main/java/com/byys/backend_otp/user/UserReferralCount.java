@@ -0,0 +1,6 @@
+package com.byys.backend_otp.user;
+
+public interface UserReferralCount {
+    Long getId();
+    int getVerifiedReferralsCount();
+}
@@ -0,0 +1,7 @@
+package com.byys.backend_otp.user;
+
+/**
+ * Published when a new member is saved; transactional listeners see it once registration commits.
+ */
+public record UserRegistered(Long userId, String referralCode) {
+}
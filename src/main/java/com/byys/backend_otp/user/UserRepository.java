@@ -1,10 +1,15 @@
 package com.byys.backend_otp.user;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
@@ -14,6 +19,18 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     boolean existsByPhone(String phone);
     long countByVerifiedReferralsCountGreaterThan(int count);
+    List<UserSummary> findByIdIn(Collection<Long> ids);
+    List<UserReferralCount> findByVerifiedReferralsCountGreaterThan(int count);
+    List<UserReferralCode> findByIdGreaterThanAndReferralCodeIsNotNullOrderByIdAsc(Long id, Limit limit);
+
+    @Query("SELECT u.id AS id, u.referralCode AS referralCode, u.createdAt AS createdAt FROM User u " +
+            "WHERE u.referralCode IS NOT NULL " +
+            "AND u.createdAt >= :createdAt " +
+            "AND (u.createdAt > :createdAt OR u.id > :id) " +
+            "ORDER BY u.createdAt ASC, u.id ASC")
+    List<UserReferralCode> findReferralCodesAfter(@Param("createdAt") Instant createdAt,
+                                                  @Param("id") Long id,
+                                                  Limit limit);
     @Transactional
     @Modifying
     @Query("UPDATE User u SET u.verified = true WHERE u.phone = :phone")
@@ -0,0 +1,7 @@
+package com.byys.backend_otp.user;
+
+public interface UserSummary {
+    Long getId();
+    String getFullName();
+    String getReferralCode();
+}
@@ -0,0 +1,72 @@
+package com.byys.backend_otp.util;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-min sketch over strings. Estimates never undercount; they overcount by at most
+ * {@code e / width} of the total added, with probability {@code 1 - e^-depth}.
+ */
+public final class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final AtomicLongArray counts;
+
+    public CountMinSketch(int depth, int width) {
+        this.depth = depth;
+        this.width = width;
+        this.counts = new AtomicLongArray(depth * width);
+    }
+
+    public static CountMinSketch fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        CountMinSketch sketch = new CountMinSketch(buffer.getInt(), buffer.getInt());
+        for (int i = 0; i < sketch.counts.length(); i++) {
+            sketch.counts.set(i, buffer.getLong());
+        }
+        return sketch;
+    }
+
+    /** Adds {@code count} occurrences of {@code key} and returns the key's new estimate. */
+    public long add(String key, long count) {
+        long hash = Hashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int cell = row * width + Math.floorMod(h1 + row * h2, width);
+            estimate = Math.min(estimate, counts.addAndGet(cell, count));
+        }
+        return estimate;
+    }
+
+    public long estimate(String key) {
+        long hash = Hashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counts.get(row * width + Math.floorMod(h1 + row * h2, width)));
+        }
+        return estimate;
+    }
+
+    public void merge(CountMinSketch other) {
+        if (other.depth != depth || other.width != width) {
+            throw new IllegalArgumentException("Cannot merge sketches of different dimensions");
+        }
+        for (int i = 0; i < counts.length(); i++) {
+            counts.addAndGet(i, other.counts.get(i));
+        }
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + counts.length() * 8);
+        buffer.putInt(depth).putInt(width);
+        for (int i = 0; i < counts.length(); i++) {
+            buffer.putLong(counts.get(i));
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,72 @@
+package com.byys.backend_otp.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Generic cell rate algorithm: allows {@code limit} requests per {@code period} per key as a
+ * sliding window, with bursts of up to {@code limit}. The only per-key state is the theoretical
+ * arrival time, advanced with compare-and-set. Keys live in a bounded cache and expire once idle
+ * for a full period, when their state is indistinguishable from a fresh key.
+ */
+public final class GcraRateLimiter {
+
+    private final long emissionIntervalNanos;
+    private final long periodNanos;
+    private final LongSupplier clock;
+    private final Cache<String, AtomicLong> arrivals;
+
+    public GcraRateLimiter(int limit, Duration period, long maxKeys) {
+        this(limit, period, maxKeys, System::nanoTime);
+    }
+
+    public GcraRateLimiter(int limit, Duration period, long maxKeys, LongSupplier clock) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        this.periodNanos = period.toNanos();
+        this.emissionIntervalNanos = periodNanos / limit;
+        this.clock = clock;
+        this.arrivals = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterAccess(periodNanos, TimeUnit.NANOSECONDS)
+                .build();
+    }
+
+    /** Takes one request for the key; returns zero when allowed, else how long until one would be. */
+    public Duration tryAcquire(String key) {
+        long now = clock.getAsLong();
+        AtomicLong arrival = arrivals.get(key, k -> new AtomicLong(now));
+        for (;;) {
+            long tat = arrival.get();
+            long next = Math.max(tat, now) + emissionIntervalNanos;
+            long waitNanos = next - periodNanos - now;
+            if (waitNanos > 0) {
+                return Duration.ofNanos(waitNanos);
+            }
+            if (arrival.compareAndSet(tat, next)) {
+                return Duration.ZERO;
+            }
+        }
+    }
+
+    /** How long until the key would be allowed a request, without taking one. */
+    public Duration peek(String key) {
+        AtomicLong arrival = arrivals.getIfPresent(key);
+        if (arrival == null) {
+            return Duration.ZERO;
+        }
+        long now = clock.getAsLong();
+        long waitNanos = Math.max(arrival.get(), now) + emissionIntervalNanos - periodNanos - now;
+        return waitNanos > 0 ? Duration.ofNanos(waitNanos) : Duration.ZERO;
+    }
+
+    public long trackedKeys() {
+        return arrivals.estimatedSize();
+    }
+}
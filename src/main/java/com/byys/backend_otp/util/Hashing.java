@@ -0,0 +1,35 @@
+package com.byys.backend_otp.util;
+
+import java.nio.charset.StandardCharsets;
+
+public final class Hashing {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashing() {
+    }
+
+    /** 64-bit FNV-1a followed by the MurmurHash3 finalizer, which spreads the low-entropy FNV bits. */
+    public static long hash64(byte[] data) {
+        long h = FNV_OFFSET;
+        for (byte b : data) {
+            h ^= b & 0xff;
+            h *= FNV_PRIME;
+        }
+        return mix64(h);
+    }
+
+    public static long hash64(String value) {
+        return hash64(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static long mix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,164 @@
+package com.byys.backend_otp.util;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Downscales an image into a JPEG no larger than {@code maxDimension} on either side. Dimensions
+ * are read from the header first, so oversized images are refused before any pixels are decoded;
+ * the decode itself uses source subsampling, so a large photo is held at roughly twice the target
+ * size rather than at full resolution. The rest is done with bilinear halving steps, which is close
+ * to area averaging in quality at a fraction of the cost. JPEG writers are pooled. Thread-safe.
+ */
+public final class ImageResizer {
+
+    private final int maxDimension;
+    private final float quality;
+    private final long maxPixels;
+    private final BlockingQueue<ImageWriter> writers;
+
+    public ImageResizer(int maxDimension, float quality, long maxPixels, int writerPoolSize) {
+        this.maxDimension = maxDimension;
+        this.quality = quality;
+        this.maxPixels = maxPixels;
+        this.writers = new ArrayBlockingQueue<>(writerPoolSize);
+    }
+
+    public void resize(InputStream in, OutputStream out) throws IOException {
+        encode(decode(in), out);
+    }
+
+    /** Decodes and downscales to fit {@code maxDimension}; the result is always plain RGB. */
+    public BufferedImage decode(InputStream in) throws IOException {
+        // Memory-backed, unlike ImageIO.createImageInputStream, which spills to a temp file by default
+        try (ImageInputStream input = new MemoryCacheImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported or corrupt image");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new ImageTooLargeException(width, height, maxPixels);
+                }
+                double ratio = scale(width, height);
+                // Keep at least twice the target size so the bilinear steps have detail to average
+                int subsampling = Math.max(1, (int) (1 / (ratio * 2)));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+                return downscale(decoded, Math.max(1, (int) Math.round(width * ratio)),
+                        Math.max(1, (int) Math.round(height * ratio)));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /** Downscales an already decoded image to fit a smaller bound, e.g. for thumbnails of {@link #decode}'s result. */
+    public static BufferedImage fit(BufferedImage image, int maxDimension) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double ratio = scale(width, height, maxDimension);
+        if (ratio >= 1.0) {
+            return image;
+        }
+        return downscale(image, Math.max(1, (int) Math.round(width * ratio)),
+                Math.max(1, (int) Math.round(height * ratio)));
+    }
+
+    private double scale(int width, int height) {
+        return scale(width, height, maxDimension);
+    }
+
+    private static double scale(int width, int height, int maxDimension) {
+        return Math.min(1.0, Math.min((double) maxDimension / width, (double) maxDimension / height));
+    }
+
+    private static BufferedImage downscale(BufferedImage image, int targetWidth, int targetHeight) {
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        // Always redraw at least once: it also flattens alpha and odd colour models to plain RGB
+        do {
+            if (width / 2 >= targetWidth && height / 2 >= targetHeight) {
+                width /= 2;
+                height /= 2;
+            } else {
+                width = targetWidth;
+                height = targetHeight;
+            }
+            current = draw(current, width, height);
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+            g.drawImage(source, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    public void encode(BufferedImage image, OutputStream out) throws IOException {
+        ImageWriter writer = borrowWriter();
+        try (ImageOutputStream output = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.reset();
+            if (!writers.offer(writer)) {
+                writer.dispose();
+            }
+        }
+    }
+
+    private ImageWriter borrowWriter() {
+        ImageWriter writer = writers.poll();
+        if (writer != null) {
+            return writer;
+        }
+        Iterator<ImageWriter> available = ImageIO.getImageWritersByFormatName("jpg");
+        if (!available.hasNext()) {
+            throw new IllegalStateException("No JPEG writer available");
+        }
+        return available.next();
+    }
+
+    /** Thrown, before decoding, for images with more pixels than allowed. */
+    public static class ImageTooLargeException extends IOException {
+        public ImageTooLargeException(int width, int height, long maxPixels) {
+            super("Image is " + width + "x" + height + ", more than " + maxPixels + " pixels");
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.byys.backend_otp.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for keyset pagination over {@code (timestamp, id)} in descending order.
+ */
+public record KeysetCursor(Instant timestamp, long id) {
+
+    public static KeysetCursor of(LocalDateTime timestamp, long id) {
+        return new KeysetCursor(timestamp.toInstant(ZoneOffset.UTC), id);
+    }
+
+    public LocalDateTime localTimestamp() {
+        return LocalDateTime.ofInstant(timestamp, ZoneOffset.UTC);
+    }
+
+    public String encode() {
+        String raw = timestamp.getEpochSecond() + "." + timestamp.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static KeysetCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+            int dot = raw.indexOf('.');
+            int colon = raw.indexOf(':');
+            Instant timestamp = Instant.ofEpochSecond(
+                    Long.parseLong(raw.substring(0, dot)),
+                    Long.parseLong(raw.substring(dot + 1, colon)));
+            return new KeysetCursor(timestamp, Long.parseLong(raw.substring(colon + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
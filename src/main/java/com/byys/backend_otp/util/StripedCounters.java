@@ -0,0 +1,129 @@
+package com.byys.backend_otp.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiConsumer;
+
+/**
+ * Keyed delta counters for hot write paths. Each key owns a cell of padded stripes and a thread
+ * adds to its own stripe, so concurrent increments of one key rarely touch the same cache line.
+ * {@link #drain} moves the accumulated deltas out without losing concurrent increments: stripes
+ * are zeroed with compare-and-set, and a cell that stayed idle for a whole drain is removed from
+ * the map before its stripes are sealed, so a late writer that still holds it retries on a new
+ * cell instead of adding to a dead one.
+ *
+ * <p>{@link #add} may be called from any thread; {@link #drain} from one thread at a time.
+ */
+public final class StripedCounters<K> {
+
+    private static final long RETIRED = Long.MIN_VALUE;
+    // Eight longs per stripe keeps neighbouring stripes on separate 64-byte cache lines
+    private static final int PADDING = 8;
+
+    private final int stripeMask;
+    private final Map<K, Cell> cells = new ConcurrentHashMap<>();
+
+    public StripedCounters(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripeMask = Math.max(1, size) - 1;
+    }
+
+    public void add(K key, long delta) {
+        int stripe = (int) Hashing.mix64(Thread.currentThread().threadId()) & stripeMask;
+        while (!cells.computeIfAbsent(key, k -> new Cell(stripeMask + 1)).tryAdd(stripe, delta)) {
+            // The cell was retired by a concurrent drain and is no longer mapped; retry on a fresh one
+            Thread.onSpinWait();
+        }
+    }
+
+    /** Deltas added for the key and not yet drained. */
+    public long pending(K key) {
+        Cell cell = cells.get(key);
+        return cell != null ? cell.sum() : 0;
+    }
+
+    public Map<K, Long> pending() {
+        Map<K, Long> snapshot = new HashMap<>();
+        cells.forEach((key, cell) -> {
+            long sum = cell.sum();
+            if (sum != 0) {
+                snapshot.put(key, sum);
+            }
+        });
+        return snapshot;
+    }
+
+    public void drain(BiConsumer<K, Long> sink) {
+        cells.forEach((key, cell) -> {
+            long delta;
+            if (cell.idle && cells.remove(key, cell)) {
+                delta = cell.retire();
+            } else {
+                delta = cell.drain();
+                cell.idle = delta == 0;
+            }
+            if (delta != 0) {
+                sink.accept(key, delta);
+            }
+        });
+    }
+
+    public int size() {
+        return cells.size();
+    }
+
+    private static final class Cell {
+        final AtomicLongArray stripes;
+        volatile boolean idle;
+
+        Cell(int stripeCount) {
+            this.stripes = new AtomicLongArray(stripeCount * PADDING);
+        }
+
+        boolean tryAdd(int stripe, long delta) {
+            int index = stripe * PADDING;
+            for (;;) {
+                long current = stripes.get(index);
+                if (current == RETIRED) {
+                    return false;
+                }
+                if (stripes.compareAndSet(index, current, current + delta)) {
+                    return true;
+                }
+            }
+        }
+
+        long drain() {
+            long sum = 0;
+            for (int index = 0; index < stripes.length(); index += PADDING) {
+                long current;
+                do {
+                    current = stripes.get(index);
+                } while (current != 0 && !stripes.compareAndSet(index, current, 0));
+                sum += current;
+            }
+            return sum;
+        }
+
+        long retire() {
+            long sum = 0;
+            for (int index = 0; index < stripes.length(); index += PADDING) {
+                sum += stripes.getAndSet(index, RETIRED);
+            }
+            return sum;
+        }
+
+        long sum() {
+            long sum = 0;
+            for (int index = 0; index < stripes.length(); index += PADDING) {
+                long current = stripes.get(index);
+                if (current != RETIRED) {
+                    sum += current;
+                }
+            }
+            return sum;
+        }
+    }
+}
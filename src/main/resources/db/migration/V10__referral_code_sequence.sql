@@ -0,0 +1,4 @@
+-- V10__referral_code_sequence.sql
+-- Source of referral code sequence numbers. Each nextval reserves a block of 100 that the
+-- application hands out from memory (ReferralCodeAllocator.BLOCK_SIZE must match INCREMENT BY).
+CREATE SEQUENCE IF NOT EXISTS referral_code_seq START WITH 1 INCREMENT BY 100;
@@ -0,0 +1,3 @@
+-- V11__app_user_created_at_index.sql
+-- Serves the referral code index refresh, which scans recent registrations in (created_at, id) order
+CREATE INDEX IF NOT EXISTS idx_user_created_at ON app_user(created_at, id);
@@ -0,0 +1,4 @@
+-- V12__claim_referral_source.sql
+-- The source of the link a referred user signed up from, copied onto their SIGNUP and VERIFICATION
+-- events so the funnel can attribute conversions per source.
+ALTER TABLE referral_event_claims ADD COLUMN IF NOT EXISTS referral_source VARCHAR(64);
@@ -0,0 +1,33 @@
+-- V2__referral_rollups.sql
+CREATE TABLE IF NOT EXISTS referral_rollup_hourly (
+    bucket_start TIMESTAMPTZ NOT NULL,
+    referrer_user_id BIGINT NOT NULL,
+    event_type VARCHAR(32) NOT NULL,
+    event_count BIGINT NOT NULL,
+    distinct_referred BIGINT NOT NULL,
+
+    PRIMARY KEY (bucket_start, referrer_user_id, event_type)
+);
+
+CREATE TABLE IF NOT EXISTS referral_rollup_daily (
+    bucket_start TIMESTAMPTZ NOT NULL,
+    referrer_user_id BIGINT NOT NULL,
+    event_type VARCHAR(32) NOT NULL,
+    event_count BIGINT NOT NULL,
+    distinct_referred BIGINT NOT NULL,
+
+    PRIMARY KEY (bucket_start, referrer_user_id, event_type)
+);
+
+-- Events with occurred_at < watermark have been folded into the rollups
+CREATE TABLE IF NOT EXISTS referral_rollup_state (
+    name VARCHAR(64) PRIMARY KEY,
+    watermark TIMESTAMPTZ NOT NULL
+);
+
+INSERT INTO referral_rollup_state (name, watermark)
+VALUES ('referral_events', TIMESTAMPTZ '1970-01-01 00:00:00+00')
+ON CONFLICT (name) DO NOTHING;
+
+CREATE INDEX IF NOT EXISTS idx_rollup_hourly_referrer ON referral_rollup_hourly(referrer_user_id, event_type, bucket_start);
+CREATE INDEX IF NOT EXISTS idx_rollup_daily_referrer ON referral_rollup_daily(referrer_user_id, event_type, bucket_start);
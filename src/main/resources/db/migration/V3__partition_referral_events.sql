@@ -0,0 +1,104 @@
+-- V3__partition_referral_events.sql
+-- Rebuilds referral_events as a table range-partitioned by month on occurred_at.
+-- Partitions are named referral_events_pYYYYMM; rows outside every partition land in referral_events_default.
+
+CREATE SEQUENCE IF NOT EXISTS referral_events_id_seq_p;
+SELECT setval('referral_events_id_seq_p', COALESCE((SELECT MAX(id) FROM referral_events), 0) + 1, false);
+
+CREATE TABLE referral_events_partitioned (
+    id BIGINT NOT NULL DEFAULT nextval('referral_events_id_seq_p'),
+    referrer_user_id BIGINT NOT NULL,
+    referred_user_id BIGINT,
+    event_type VARCHAR(32) NOT NULL,
+    occurred_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    tracking_id VARCHAR(64) NOT NULL,
+    user_agent TEXT,
+    ip_address VARCHAR(45),
+    referral_source VARCHAR(255),
+
+    PRIMARY KEY (id, occurred_at),
+    UNIQUE (tracking_id, occurred_at),
+    CONSTRAINT fk_referrer_user_p FOREIGN KEY (referrer_user_id) REFERENCES app_user(id),
+    CONSTRAINT fk_referred_user_p FOREIGN KEY (referred_user_id) REFERENCES app_user(id)
+) PARTITION BY RANGE (occurred_at);
+
+CREATE TABLE referral_events_default PARTITION OF referral_events_partitioned DEFAULT;
+
+CREATE OR REPLACE FUNCTION create_referral_events_partition(month_start DATE) RETURNS VOID AS $$
+DECLARE
+    first_day DATE := date_trunc('month', month_start)::DATE;
+    partition_name TEXT := 'referral_events_p' || to_char(first_day, 'YYYYMM');
+BEGIN
+    IF to_regclass(partition_name) IS NULL THEN
+        EXECUTE format(
+            'CREATE TABLE %I PARTITION OF referral_events FOR VALUES FROM (%L) TO (%L)',
+            partition_name,
+            (first_day::TIMESTAMP AT TIME ZONE 'UTC'),
+            ((first_day + INTERVAL '1 month')::TIMESTAMP AT TIME ZONE 'UTC'));
+    END IF;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Creates partitions from the month of from_date through months_ahead months after the current month
+CREATE OR REPLACE FUNCTION ensure_referral_events_partitions(from_date DATE, months_ahead INT) RETURNS INT AS $$
+DECLARE
+    cur_month DATE := date_trunc('month', from_date)::DATE;
+    last_month DATE := (date_trunc('month', NOW() AT TIME ZONE 'UTC') + make_interval(months => months_ahead))::DATE;
+    created INT := 0;
+BEGIN
+    WHILE cur_month <= last_month LOOP
+        IF to_regclass('referral_events_p' || to_char(cur_month, 'YYYYMM')) IS NULL THEN
+            PERFORM create_referral_events_partition(cur_month);
+            created := created + 1;
+        END IF;
+        cur_month := (cur_month + INTERVAL '1 month')::DATE;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Detaches, and optionally drops, every monthly partition that ends on or before cutoff
+CREATE OR REPLACE FUNCTION expire_referral_events_partitions(cutoff DATE, drop_detached BOOLEAN) RETURNS INT AS $$
+DECLARE
+    part RECORD;
+    expired INT := 0;
+BEGIN
+    FOR part IN
+        SELECT c.relname
+        FROM pg_inherits i
+        JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'referral_events'::regclass
+          AND c.relname ~ '^referral_events_p[0-9]{6}$'
+          AND (to_date(substring(c.relname FROM 18), 'YYYYMM') + INTERVAL '1 month')::DATE <= cutoff
+    LOOP
+        EXECUTE format('ALTER TABLE referral_events DETACH PARTITION %I', part.relname);
+        IF drop_detached THEN
+            EXECUTE format('DROP TABLE %I', part.relname);
+        END IF;
+        expired := expired + 1;
+    END LOOP;
+    RETURN expired;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Swap the tables before creating monthly partitions, which attach to "referral_events" by name
+ALTER TABLE referral_events RENAME TO referral_events_unpartitioned;
+ALTER TABLE referral_events_partitioned RENAME TO referral_events;
+
+SELECT ensure_referral_events_partitions(
+        (COALESCE((SELECT MIN(occurred_at) FROM referral_events_unpartitioned), NOW()) AT TIME ZONE 'UTC')::DATE, 3);
+
+INSERT INTO referral_events (id, referrer_user_id, referred_user_id, event_type, occurred_at,
+                             tracking_id, user_agent, ip_address, referral_source)
+SELECT id, referrer_user_id, referred_user_id, event_type, occurred_at,
+       tracking_id::TEXT, user_agent, ip_address, referral_source
+FROM referral_events_unpartitioned;
+
+DROP TABLE referral_events_unpartitioned CASCADE;
+ALTER SEQUENCE referral_events_id_seq_p OWNED BY referral_events.id;
+
+-- Created on the parent, so every partition gets a local copy
+CREATE INDEX IF NOT EXISTS idx_referrer_user ON referral_events(referrer_user_id, occurred_at);
+CREATE INDEX IF NOT EXISTS idx_referred_user ON referral_events(referred_user_id, event_type);
+CREATE INDEX IF NOT EXISTS idx_event_type ON referral_events(event_type, occurred_at);
+CREATE INDEX IF NOT EXISTS idx_occurred_at ON referral_events(occurred_at);
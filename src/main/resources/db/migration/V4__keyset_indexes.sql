@@ -0,0 +1,4 @@
+-- V4__keyset_indexes.sql
+-- Match the (occurred_at DESC, id DESC) order used by keyset pagination of /referrals/history
+DROP INDEX IF EXISTS idx_referrer_user;
+CREATE INDEX IF NOT EXISTS idx_referrer_user ON referral_events(referrer_user_id, occurred_at DESC, id DESC);
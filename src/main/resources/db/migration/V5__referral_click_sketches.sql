@@ -0,0 +1,24 @@
+-- V5__referral_click_sketches.sql
+-- Serialized per-day click sketches. Each instance persists its own copy; readers merge across instances.
+CREATE TABLE IF NOT EXISTS referral_click_sketches (
+    period_start DATE NOT NULL,
+    referrer_user_id BIGINT NOT NULL,
+    kind VARCHAR(32) NOT NULL,
+    instance_id VARCHAR(64) NOT NULL,
+    payload BYTEA NOT NULL,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+
+    PRIMARY KEY (period_start, referrer_user_id, kind, instance_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_click_sketches_referrer ON referral_click_sketches(referrer_user_id, kind, period_start);
+
+CREATE TABLE IF NOT EXISTS referral_suspicious_ips (
+    period_start DATE NOT NULL,
+    ip_address VARCHAR(45) NOT NULL,
+    referrer_user_id BIGINT,
+    click_estimate BIGINT NOT NULL,
+    flagged_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+
+    PRIMARY KEY (period_start, ip_address)
+);
@@ -0,0 +1,23 @@
+-- V6__referral_funnel.sql
+-- Hourly funnel counters maintained incrementally by the application; referral_source '' means no source.
+CREATE TABLE IF NOT EXISTS referral_funnel_hourly (
+    bucket_start TIMESTAMPTZ NOT NULL,
+    referrer_user_id BIGINT NOT NULL,
+    referral_source VARCHAR(64) NOT NULL,
+    event_type VARCHAR(32) NOT NULL,
+    event_count BIGINT NOT NULL,
+
+    PRIMARY KEY (bucket_start, referrer_user_id, referral_source, event_type)
+);
+
+CREATE INDEX IF NOT EXISTS idx_funnel_referrer ON referral_funnel_hourly(referrer_user_id, bucket_start);
+CREATE INDEX IF NOT EXISTS idx_funnel_source ON referral_funnel_hourly(referral_source, bucket_start);
+
+-- Seed from existing events; from here on the aggregator adds to these rows
+INSERT INTO referral_funnel_hourly (bucket_start, referrer_user_id, referral_source, event_type, event_count)
+SELECT date_trunc('hour', occurred_at, 'UTC'), referrer_user_id,
+       COALESCE(UPPER(LEFT(TRIM(referral_source), 64)), ''), event_type, COUNT(*)
+FROM referral_events
+GROUP BY 1, 2, 3, 4
+ON CONFLICT (bucket_start, referrer_user_id, referral_source, event_type)
+DO UPDATE SET event_count = referral_funnel_hourly.event_count + EXCLUDED.event_count;
@@ -0,0 +1,17 @@
+-- V7__user_counters.sql
+-- Counters are only ever changed with "SET column = column + delta"; the entity maps them read-only.
+ALTER TABLE app_user ADD COLUMN IF NOT EXISTS verified_referrals_count INTEGER DEFAULT 0;
+ALTER TABLE app_user ADD COLUMN IF NOT EXISTS referral_signups_count BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE app_user ADD COLUMN IF NOT EXISTS referral_shares_count BIGINT NOT NULL DEFAULT 0;
+
+UPDATE app_user SET verified_referrals_count = 0 WHERE verified_referrals_count IS NULL;
+ALTER TABLE app_user ALTER COLUMN verified_referrals_count SET DEFAULT 0;
+ALTER TABLE app_user ALTER COLUMN verified_referrals_count SET NOT NULL;
+
+UPDATE app_user u SET referral_signups_count = e.events
+FROM (SELECT referrer_user_id, COUNT(*) AS events FROM referral_events WHERE event_type = 'SIGNUP' GROUP BY referrer_user_id) e
+WHERE u.id = e.referrer_user_id;
+
+UPDATE app_user u SET referral_shares_count = e.events
+FROM (SELECT referrer_user_id, COUNT(*) AS events FROM referral_events WHERE event_type = 'SHARE' GROUP BY referrer_user_id) e
+WHERE u.id = e.referrer_user_id;
@@ -0,0 +1,20 @@
+-- V8__referral_event_claims.sql
+-- One row per (referred user, milestone). A unique index on referral_events itself would have to
+-- include the partition key occurred_at, which would no longer stop duplicates, so the claim lives
+-- in this small unpartitioned table and is inserted in the same statement as the event.
+CREATE TABLE IF NOT EXISTS referral_event_claims (
+    referred_user_id BIGINT NOT NULL,
+    event_type VARCHAR(32) NOT NULL,
+    referrer_user_id BIGINT NOT NULL,
+    claimed_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+
+    PRIMARY KEY (referred_user_id, event_type),
+    CONSTRAINT chk_claim_event_type CHECK (event_type IN ('SIGNUP', 'VERIFICATION'))
+);
+
+INSERT INTO referral_event_claims (referred_user_id, event_type, referrer_user_id, claimed_at)
+SELECT DISTINCT ON (referred_user_id, event_type) referred_user_id, event_type, referrer_user_id, occurred_at
+FROM referral_events
+WHERE referred_user_id IS NOT NULL AND event_type IN ('SIGNUP', 'VERIFICATION')
+ORDER BY referred_user_id, event_type, occurred_at, id
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,9 @@
+-- V9__otp_codes.sql
+-- Shared OTP store. UNLOGGED skips the WAL: a crash empties the table, which only means users request a new code.
+CREATE UNLOGGED TABLE IF NOT EXISTS otp_codes (
+    phone VARCHAR(32) PRIMARY KEY,
+    code_hash BYTEA NOT NULL,
+    expires_at TIMESTAMPTZ NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_otp_codes_expires_at ON otp_codes(expires_at);
@@ -0,0 +1,117 @@
+package com.byys.backend_otp.dashboard;
+
+import com.byys.backend_otp.security.JwtService;
+import net.ttddyy.dsproxy.QueryCountHolder;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Counts the JDBC statements issued while serving the dashboard endpoints, against a real
+ * Postgres (the dashboard query uses json_agg and to_char). Counts are kept per thread, so the
+ * schedulers and flushers running in the background don't show up in the request's total.
+ */
+@SpringBootTest(properties = {
+		"spring.flyway.enabled=true",
+		"spring.mail.host=localhost",
+		"spring.mail.username=test",
+		"spring.mail.password=test",
+		"twilio.enabled=false",
+		"security.jwt.secret=dashboard-statement-count-test-secret-0123456789",
+		"referral.code.secret=dashboard-statement-count-test",
+		"otp.hash-secret=dashboard-statement-count-test"
+})
+@AutoConfigureMockMvc
+@Testcontainers(disabledWithoutDocker = true)
+class DashboardStatementCountTest {
+
+	@Container
+	static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+	@DynamicPropertySource
+	static void datasource(DynamicPropertyRegistry registry) {
+		registry.add("DATABASE_URL", postgres::getJdbcUrl);
+		registry.add("spring.datasource.username", postgres::getUsername);
+		registry.add("spring.datasource.password", postgres::getPassword);
+	}
+
+	@TestConfiguration
+	static class CountingDataSource {
+
+		@Bean
+		static BeanPostProcessor countingDataSourcePostProcessor() {
+			return new BeanPostProcessor() {
+				@Override
+				public Object postProcessAfterInitialization(Object bean, String beanName) {
+					if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+						return ProxyDataSourceBuilder.create(dataSource).name("counted").countQuery().build();
+					}
+					return bean;
+				}
+			};
+		}
+	}
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private TransactionTemplate transactionTemplate;
+
+	@Autowired
+	private JwtService jwtService;
+
+	private String bearer;
+
+	@BeforeEach
+	void createMember() {
+		long suffix = System.nanoTime() % 1_000_000_000L;
+		Long userId = transactionTemplate.execute(status -> jdbcTemplate.queryForObject(
+				"INSERT INTO app_user (phone, referral_code, full_name) VALUES (?, ?, ?) RETURNING id",
+				Long.class, "+91" + suffix, "T" + suffix, "Asha"));
+		bearer = "Bearer " + jwtService.generate(userId, "+91" + suffix, "USER");
+	}
+
+	@Test
+	void dashboardIsServedWithOneStatement() throws Exception {
+		QueryCountHolder.clear();
+		mockMvc.perform(get("/me").header("Authorization", bearer))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.fullName").value("Asha"));
+		assertEquals(1, QueryCountHolder.getGrandTotal().getTotal());
+	}
+
+	@Test
+	void currentUserIsServedWithOneStatement() throws Exception {
+		QueryCountHolder.clear();
+		mockMvc.perform(get("/auth/otp/me").header("Authorization", bearer))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.fullName").value("Asha"));
+		assertEquals(1, QueryCountHolder.getGrandTotal().getTotal());
+	}
+}
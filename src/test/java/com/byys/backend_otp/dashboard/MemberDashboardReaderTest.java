@@ -0,0 +1,71 @@
+package com.byys.backend_otp.dashboard;
+
+import com.byys.backend_otp.user.UserCounter;
+import com.byys.backend_otp.user.UserCounterBuffer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+class MemberDashboardReaderTest {
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void dashboardIsReadWithExactlyOneQuery() throws Exception {
+		JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+		UserCounterBuffer counterBuffer = mock(UserCounterBuffer.class);
+		ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+		when(counterBuffer.pending(42L, UserCounter.VERIFIED_REFERRALS)).thenReturn(2L);
+		when(counterBuffer.pending(42L, UserCounter.REFERRAL_SIGNUPS)).thenReturn(1L);
+
+		ResultSet row = mock(ResultSet.class);
+		when(row.getLong("id")).thenReturn(42L);
+		when(row.getString("phone")).thenReturn("+919000000042");
+		when(row.getString("full_name")).thenReturn("Asha");
+		when(row.getString("referral_code")).thenReturn("ABCD1234");
+		when(row.getLong("verified_referrals_count")).thenReturn(5L);
+		when(row.getLong("referral_signups_count")).thenReturn(9L);
+		when(row.getString("state")).thenReturn("Bihar");
+		when(row.getString("membership_id")).thenReturn("BYVS00000042");
+		when(row.getTimestamp("joined_at")).thenReturn(Timestamp.valueOf(LocalDateTime.of(2024, 1, 2, 3, 4)));
+		when(row.getString("recent_activity"))
+				.thenReturn("[{\"eventType\":\"SIGNUP\",\"occurredAt\":\"2024-02-01T10:00:00.000000Z\"}]");
+
+		ArgumentCaptor<RowMapper<MemberDashboard>> mapper = ArgumentCaptor.forClass(RowMapper.class);
+		when(jdbcTemplate.query(anyString(), mapper.capture(), any(Object[].class)))
+				.thenAnswer(invocation -> List.of(mapper.getValue().mapRow(row, 0)));
+
+		MemberDashboardReader reader = new MemberDashboardReader(jdbcTemplate, counterBuffer, objectMapper);
+		Optional<MemberDashboard> dashboard = reader.find(42L, 20);
+
+		verify(jdbcTemplate, times(1)).query(anyString(), any(RowMapper.class), eq(20), eq(42L));
+		verifyNoMoreInteractions(jdbcTemplate);
+
+		assertTrue(dashboard.isPresent());
+		assertEquals(7L, dashboard.get().verifiedReferrals());
+		assertEquals(10L, dashboard.get().signupReferrals());
+		assertEquals("Bihar", dashboard.get().state());
+		assertEquals(List.of(new MemberDashboard.RecentActivity("SIGNUP", Instant.parse("2024-02-01T10:00:00Z"))),
+				dashboard.get().recentActivity());
+	}
+}
@@ -0,0 +1,87 @@
+package com.byys.backend_otp.leaderboard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OrderStatisticTreeTest {
+
+	// Same ordering as the leaderboard: verifications desc, signups desc, userId asc
+	private static final Comparator<LeaderboardEngine.Standing> ORDER = Comparator
+			.comparingLong(LeaderboardEngine.Standing::verifications).reversed()
+			.thenComparing(Comparator.comparingLong(LeaderboardEngine.Standing::signups).reversed())
+			.thenComparingLong(LeaderboardEngine.Standing::userId);
+
+	@Test
+	void rankAndSelectAgreeWithASortedSet() {
+		OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Comparator.naturalOrder());
+		TreeSet<Integer> expected = new TreeSet<>();
+		Random random = new Random(7);
+		for (int i = 0; i < 2_000; i++) {
+			int key = random.nextInt(5_000);
+			if (expected.add(key)) {
+				tree.insert(key);
+			}
+		}
+
+		assertEquals(expected.size(), tree.size());
+		List<Integer> sorted = new ArrayList<>(expected);
+		for (int i = 0; i < sorted.size(); i++) {
+			assertEquals(sorted.get(i), tree.get(i));
+			assertEquals(i, tree.rank(sorted.get(i)));
+		}
+		assertEquals(expected.headSet(2_500).size(), tree.rank(2_500));
+	}
+
+	@Test
+	void removeDropsOnlyTheGivenKey() {
+		OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Comparator.naturalOrder());
+		for (int key = 0; key < 10; key++) {
+			tree.insert(key);
+		}
+
+		tree.remove(0);
+		tree.remove(5);
+		tree.remove(9);
+		tree.remove(42);
+
+		assertEquals(List.of(1, 2, 3, 4, 6, 7, 8), tree.range(0, 100));
+		assertEquals(4, tree.rank(6));
+	}
+
+	@Test
+	void tiedStandingsShareACompetitionRank() {
+		OrderStatisticTree<LeaderboardEngine.Standing> tree = new OrderStatisticTree<>(ORDER);
+		tree.insert(new LeaderboardEngine.Standing(1, 5, 9));
+		tree.insert(new LeaderboardEngine.Standing(2, 3, 4));
+		tree.insert(new LeaderboardEngine.Standing(3, 3, 8));
+		tree.insert(new LeaderboardEngine.Standing(4, 3, 4));
+		tree.insert(new LeaderboardEngine.Standing(5, 1, 1));
+
+		// Ties on verifications are ordered by signups, then user id
+		assertEquals(List.of(1L, 3L, 2L, 4L, 5L), tree.range(0, 5).stream().map(LeaderboardEngine.Standing::userId).toList());
+		// The probe the engine uses sorts ahead of every standing with the same verifications
+		assertEquals(1, tree.rank(new LeaderboardEngine.Standing(Long.MIN_VALUE, 3, Long.MAX_VALUE)));
+		assertEquals(4, tree.rank(new LeaderboardEngine.Standing(Long.MIN_VALUE, 1, Long.MAX_VALUE)));
+	}
+
+	@Test
+	void rangeIsBoundedByTheTreeNotTheRequestedCount() {
+		OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Comparator.naturalOrder());
+		for (int key = 0; key < 5; key++) {
+			tree.insert(key);
+		}
+
+		assertEquals(List.of(3, 4), tree.range(3, Integer.MAX_VALUE));
+		assertTrue(tree.range(5, 10).isEmpty());
+		assertThrows(IndexOutOfBoundsException.class, () -> tree.get(5));
+	}
+}
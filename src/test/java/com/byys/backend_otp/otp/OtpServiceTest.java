@@ -0,0 +1,30 @@
+package com.byys.backend_otp.otp;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class OtpServiceTest {
+
+	// 3 per phone, 5 per IP, per 5 minutes
+	private final OtpService otpService = new OtpService(new InMemoryOtpStore(), new SimpleMeterRegistry(),
+			5, 3, 5, Duration.ofMinutes(5), 1_000);
+
+	@Test
+	void requestsRefusedForThePhoneDoNotUseUpTheIpBudget() {
+		for (int i = 0; i < 3; i++) {
+			otpService.generateAndStore("+911111111111", "10.0.0.1");
+		}
+		for (int i = 0; i < 10; i++) {
+			assertThrows(OtpRateLimitException.class, () -> otpService.generateAndStore("+911111111111", "10.0.0.1"));
+		}
+
+		// Two of the five IP requests are left for other phones
+		otpService.generateAndStore("+912222222222", "10.0.0.1");
+		otpService.generateAndStore("+913333333333", "10.0.0.1");
+		assertThrows(OtpRateLimitException.class, () -> otpService.generateAndStore("+914444444444", "10.0.0.1"));
+	}
+}
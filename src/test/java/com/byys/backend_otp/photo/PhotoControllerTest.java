@@ -0,0 +1,46 @@
+package com.byys.backend_otp.photo;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PhotoControllerTest {
+
+	private static final long LENGTH = 1000;
+
+	@Test
+	void closedRangeIsInclusiveOfItsLastByte() {
+		assertArrayEquals(new long[]{0, 500}, PhotoController.parseRange("bytes=0-499", LENGTH));
+	}
+
+	@Test
+	void openRangeRunsToTheEnd() {
+		assertArrayEquals(new long[]{900, 1000}, PhotoController.parseRange("bytes=900-", LENGTH));
+	}
+
+	@Test
+	void suffixRangeTakesTheLastBytes() {
+		assertArrayEquals(new long[]{800, 1000}, PhotoController.parseRange("bytes=-200", LENGTH));
+		assertArrayEquals(new long[]{0, 1000}, PhotoController.parseRange("bytes=-5000", LENGTH));
+	}
+
+	@Test
+	void endPastTheFileIsClamped() {
+		assertArrayEquals(new long[]{500, 1000}, PhotoController.parseRange("bytes=500-9999", LENGTH));
+	}
+
+	@Test
+	void startPastTheFileIsUnsatisfiable() {
+		assertNull(PhotoController.parseRange("bytes=1000-", LENGTH));
+		assertNull(PhotoController.parseRange("bytes=-0", LENGTH));
+	}
+
+	@Test
+	void malformedAndMultipleRangesAreIgnored() {
+		assertArrayEquals(new long[0], PhotoController.parseRange("bytes=0-1,5-9", LENGTH));
+		assertArrayEquals(new long[0], PhotoController.parseRange("items=0-1", LENGTH));
+		assertArrayEquals(new long[0], PhotoController.parseRange("bytes=abc-", LENGTH));
+		assertArrayEquals(new long[0], PhotoController.parseRange("bytes=9-3", LENGTH));
+	}
+}
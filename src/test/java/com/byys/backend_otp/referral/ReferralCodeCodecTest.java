@@ -0,0 +1,62 @@
+package com.byys.backend_otp.referral;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReferralCodeCodecTest {
+
+	private final ReferralCodeCodec codec = new ReferralCodeCodec("test-secret");
+
+	@Test
+	void sequentialNumbersGiveDistinctCodesThatDecodeBack() {
+		Set<String> seen = new HashSet<>();
+		for (long sequence = 0; sequence < 500_000; sequence++) {
+			String code = codec.encode(sequence);
+			assertEquals(ReferralCodeCodec.LENGTH, code.length());
+			assertTrue(code.matches("[0-9A-HJKMNP-TV-Z]+"), code);
+			assertTrue(seen.add(code), () -> "duplicate code " + code);
+			assertEquals(sequence, codec.decode(code));
+		}
+	}
+
+	@Test
+	void edgesOfTheRangeRoundTrip() {
+		long last = ReferralCodeCodec.CAPACITY - 1;
+		assertEquals(last, codec.decode(codec.encode(last)));
+		assertEquals(0, codec.decode(codec.encode(0)));
+	}
+
+	@Test
+	void secretChangesThePermutation() {
+		assertNotEquals(codec.encode(1), new ReferralCodeCodec("other-secret").encode(1));
+	}
+
+	@Test
+	void blankSecretIsRejected() {
+		assertThrows(IllegalArgumentException.class, () -> new ReferralCodeCodec(" "));
+		assertThrows(IllegalArgumentException.class, () -> new ReferralCodeCodec(null));
+	}
+
+	@Test
+	void allocatorReservesOneBlockPerBlockSizeCodes() {
+		AtomicLong sequence = new AtomicLong(1);
+		AtomicLong reservations = new AtomicLong();
+		ReferralCodeAllocator allocator = new ReferralCodeAllocator(codec, () -> {
+			reservations.incrementAndGet();
+			return sequence.getAndAdd(ReferralCodeAllocator.BLOCK_SIZE);
+		});
+		Set<String> codes = new HashSet<>();
+		for (int i = 0; i < ReferralCodeAllocator.BLOCK_SIZE * 3; i++) {
+			assertTrue(codes.add(allocator.next()));
+		}
+		assertEquals(3, reservations.get());
+	}
+}
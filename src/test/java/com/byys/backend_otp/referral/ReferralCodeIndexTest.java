@@ -0,0 +1,58 @@
+package com.byys.backend_otp.referral;
+
+import com.byys.backend_otp.user.User;
+import com.byys.backend_otp.user.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReferralCodeIndexTest {
+
+	@Test
+	void junkCodesFromOneClientDoNotStopOthersFindingFreshCodes() {
+		UserRepository userRepository = mock(UserRepository.class);
+		User fresh = new User();
+		fresh.setId(7L);
+		fresh.setReferralCode("FRESH0001");
+		when(userRepository.findByReferralCode("FRESH0001")).thenReturn(Optional.of(fresh));
+		// 5 database checks per client per minute
+		ReferralCodeIndex index = new ReferralCodeIndex(userRepository, new SimpleMeterRegistry(),
+				1_000, Duration.ofMinutes(5), 5, 1_000);
+
+		for (int i = 0; i < 100; i++) {
+			index.lookup("JUNK" + i, "10.0.0.1");
+		}
+		ReferralCodeIndex.Lookup junk = index.lookup("JUNK-MORE", "10.0.0.1");
+		assertTrue(junk.throttled());
+		assertFalse(junk.found());
+
+		// Registered on another node since the last refresh: found through this client's own budget
+		assertEquals(7L, index.lookup("FRESH0001", "10.0.0.2").referrerId());
+		// and then known here, so even the throttled client gets it from memory
+		assertEquals(7L, index.lookup("FRESH0001", "10.0.0.1").referrerId());
+		verify(userRepository, times(6)).findByReferralCode(anyString());
+	}
+
+	@Test
+	void unknownCodeWithinBudgetIsAVerdict() {
+		UserRepository userRepository = mock(UserRepository.class);
+		when(userRepository.findByReferralCode(anyString())).thenReturn(Optional.empty());
+		ReferralCodeIndex index = new ReferralCodeIndex(userRepository, new SimpleMeterRegistry(),
+				1_000, Duration.ofMinutes(5), 5, 1_000);
+
+		ReferralCodeIndex.Lookup lookup = index.lookup("NOSUCHCODE", "10.0.0.1");
+		assertFalse(lookup.throttled());
+		assertFalse(lookup.found());
+	}
+}
@@ -0,0 +1,190 @@
+package com.byys.backend_otp.referral;
+
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Captures the SQL that the repository and the rollup service actually send for referral_events,
+ * replays it under EXPLAIN with the same bound parameters and checks which monthly partitions
+ * the plan touches.
+ */
+@SpringBootTest(properties = {
+		"spring.flyway.enabled=true",
+		"spring.mail.host=localhost",
+		"spring.mail.username=test",
+		"spring.mail.password=test",
+		"twilio.enabled=false",
+		"security.jwt.secret=referral-partition-pruning-test-secret-0123456789",
+		"referral.code.secret=referral-partition-pruning-test",
+		"otp.hash-secret=referral-partition-pruning-test",
+		"referral.partitions.months-ahead=3"
+})
+@Testcontainers(disabledWithoutDocker = true)
+class ReferralPartitionPruningTest {
+
+	private static final Pattern PARTITION_SCAN = Pattern.compile("\"Relation Name\":\\s*\"(referral_events_[a-z0-9]+)\"");
+	private static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+	private static final Pattern READS_EVENTS = Pattern.compile("(?i)\\bfrom\\s+referral_events\\b");
+	private static final ThreadLocal<List<QueryInfo>> CAPTURED = new ThreadLocal<>();
+
+	@Container
+	static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+
+	@DynamicPropertySource
+	static void datasource(DynamicPropertyRegistry registry) {
+		registry.add("DATABASE_URL", postgres::getJdbcUrl);
+		registry.add("spring.datasource.username", postgres::getUsername);
+		registry.add("spring.datasource.password", postgres::getPassword);
+	}
+
+	@TestConfiguration
+	static class CapturingDataSource {
+
+		@Bean
+		static BeanPostProcessor capturingDataSourcePostProcessor() {
+			return new BeanPostProcessor() {
+				@Override
+				public Object postProcessAfterInitialization(Object bean, String beanName) {
+					if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+						return ProxyDataSourceBuilder.create(dataSource).name("captured")
+								.afterQuery((execInfo, queries) -> {
+									List<QueryInfo> captured = CAPTURED.get();
+									if (captured != null) {
+										captured.addAll(queries);
+									}
+								})
+								.build();
+					}
+					return bean;
+				}
+			};
+		}
+	}
+
+	@Autowired
+	private ReferralEventRepository referralEventRepository;
+
+	@Autowired
+	private ReferralRollupService rollupService;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private final Instant dayStart = Instant.now().truncatedTo(ChronoUnit.DAYS);
+	// Half a day, so an inclusive BETWEEN upper bound never reaches the next month
+	private final Instant dayMiddle = dayStart.plus(12, ChronoUnit.HOURS);
+	private final String currentMonth = partition(YearMonth.from(LocalDate.ofInstant(dayStart, ZoneOffset.UTC)));
+
+	@Test
+	void leaderboardWindowScansOnlyItsMonth() throws Exception {
+		Set<String> scanned = scannedPartitions(() ->
+				referralEventRepository.getLeaderboard(dayStart, dayMiddle, PageRequest.of(0, 10)));
+		assertEquals(Set.of(currentMonth), scanned);
+	}
+
+	@Test
+	void rollupWindowStatsScanOnlyTheWindowsMonth() throws Exception {
+		// Ends off the hour so a raw segment is left whatever the rollup watermark is
+		Instant end = dayMiddle.plus(30, ChronoUnit.MINUTES);
+		Set<String> scanned = scannedPartitions(() -> rollupService.windowStats(dayStart, end));
+		assertEquals(Set.of(currentMonth), scanned);
+	}
+
+	@Test
+	void historyCursorSkipsPartitionsAfterTheCursor() throws Exception {
+		Set<String> scanned = scannedPartitions(() ->
+				referralEventRepository.findByReferrerUserIdBefore(1L, dayMiddle, Long.MAX_VALUE, Limit.of(20)));
+		List<String> future = jdbcTemplate.queryForList(
+				"SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+						"WHERE i.inhparent = 'referral_events'::regclass AND c.relname LIKE 'referral_events_p%' AND c.relname > ?",
+				String.class, currentMonth);
+		assertFalse(future.isEmpty(), "expected partitions created ahead of the current month");
+		assertTrue(scanned.contains(currentMonth), scanned::toString);
+		for (String partition : future) {
+			assertFalse(scanned.contains(partition), () -> partition + " scanned by " + scanned);
+		}
+	}
+
+	private Set<String> scannedPartitions(Runnable call) throws Exception {
+		List<QueryInfo> captured = new ArrayList<>();
+		CAPTURED.set(captured);
+		try {
+			call.run();
+		} finally {
+			CAPTURED.remove();
+		}
+		List<QueryInfo> eventQueries = captured.stream()
+				.filter(query -> READS_EVENTS.matcher(query.getQuery()).find())
+				.toList();
+		assertEquals(1, eventQueries.size(), () -> "expected one referral_events query, got " + captured);
+		return explain(eventQueries.get(0));
+	}
+
+	private Set<String> explain(QueryInfo query) throws Exception {
+		StringBuilder plan = new StringBuilder();
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement statement = connection.prepareStatement("EXPLAIN (FORMAT JSON) " + query.getQuery())) {
+			// Bind exactly as the application did, so the planner sees the same values
+			if (!query.getParametersList().isEmpty()) {
+				for (ParameterSetOperation operation : query.getParametersList().get(0)) {
+					operation.getMethod().invoke(statement, operation.getArgs());
+				}
+			}
+			try (ResultSet rows = statement.executeQuery()) {
+				while (rows.next()) {
+					plan.append(rows.getString(1));
+				}
+			}
+		}
+		Set<String> scanned = new TreeSet<>();
+		Matcher matcher = PARTITION_SCAN.matcher(plan);
+		while (matcher.find()) {
+			scanned.add(matcher.group(1));
+		}
+		return scanned;
+	}
+
+	private static String partition(YearMonth month) {
+		return "referral_events_p" + month.format(PARTITION_MONTH);
+	}
+}
@@ -0,0 +1,55 @@
+package com.byys.backend_otp.sms;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SmsDispatcherTest {
+
+	@Test
+	void recoversAfterTheOpenPeriodWhenNoMessageWasLeftToRetry() throws Exception {
+		AtomicBoolean providerDown = new AtomicBoolean(true);
+		BlockingQueue<String> outcomes = new ArrayBlockingQueue<>(10);
+		SmsService provider = (phone, message) -> {
+			if (providerDown.get()) {
+				outcomes.add("failed");
+				throw new IllegalStateException("provider down");
+			}
+			outcomes.add("sent");
+		};
+		// One attempt per message and a threshold of one: the breaker trips with nothing left queued
+		SmsDispatcher dispatcher = new SmsDispatcher(provider, new SimpleMeterRegistry(), 10, 1, 1,
+				Duration.ofMillis(10), Duration.ofMillis(10), Duration.ofMinutes(1), 1, Duration.ofMillis(200), false);
+		dispatcher.start();
+		try {
+			assertTrue(dispatcher.dispatch("+911111111111", "first"));
+			assertEquals("failed", outcomes.poll(5, TimeUnit.SECONDS));
+			// The outcome is recorded inside the provider call, just before the breaker hears of it
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (dispatcher.isAccepting() && System.nanoTime() < deadline) {
+				Thread.sleep(5);
+			}
+			assertFalse(dispatcher.isAccepting());
+			assertFalse(dispatcher.dispatch("+911111111111", "refused"));
+
+			providerDown.set(false);
+			Thread.sleep(300);
+
+			assertTrue(dispatcher.isAccepting());
+			assertTrue(dispatcher.dispatch("+911111111111", "trial"));
+			assertEquals("sent", outcomes.poll(5, TimeUnit.SECONDS));
+			assertTrue(dispatcher.isAccepting());
+		} finally {
+			dispatcher.shutdown();
+		}
+	}
+}
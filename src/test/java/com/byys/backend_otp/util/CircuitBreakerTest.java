@@ -0,0 +1,62 @@
+package com.byys.backend_otp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+	private final AtomicLong now = new AtomicLong();
+	private final CircuitBreaker breaker = new CircuitBreaker(2, Duration.ofSeconds(30), now::get);
+
+	@Test
+	void opensAfterConsecutiveFailures() {
+		breaker.onFailure();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+		breaker.onFailure();
+
+		assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+		assertFalse(breaker.isCallPermitted());
+		assertFalse(breaker.tryAcquire());
+		assertEquals(Duration.ofSeconds(30), breaker.remainingOpen());
+	}
+
+	@Test
+	void expiredOpenPeriodPermitsCallsWithoutAnyPendingTrial() {
+		breaker.onFailure();
+		breaker.onFailure();
+
+		now.addAndGet(Duration.ofSeconds(30).toNanos());
+
+		// Nothing has called tryAcquire, but new work is no longer refused
+		assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+		assertTrue(breaker.isCallPermitted());
+		assertEquals(Duration.ZERO, breaker.remainingOpen());
+	}
+
+	@Test
+	void halfOpenAdmitsOneTrialThatClosesOrReopens() {
+		breaker.onFailure();
+		breaker.onFailure();
+		now.addAndGet(Duration.ofSeconds(31).toNanos());
+
+		assertTrue(breaker.tryAcquire());
+		assertFalse(breaker.tryAcquire());
+		assertFalse(breaker.isCallPermitted());
+
+		breaker.onFailure();
+		assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+		now.addAndGet(Duration.ofSeconds(31).toNanos());
+		assertTrue(breaker.tryAcquire());
+		breaker.onSuccess();
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+		assertTrue(breaker.isCallPermitted());
+	}
+}
@@ -0,0 +1,69 @@
+package com.byys.backend_otp.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ImageResizerTest {
+
+	private final ImageResizer resizer = new ImageResizer(500, 0.7f, 20_000_000L, 2);
+
+	@Test
+	void largeImagesAreFittedWithinMaxDimension() throws IOException {
+		BufferedImage result = resize(jpeg(4032, 3024));
+
+		assertEquals(500, result.getWidth());
+		assertEquals(375, result.getHeight());
+	}
+
+	@Test
+	void portraitImagesAreBoundByHeight() throws IOException {
+		BufferedImage result = resize(jpeg(1200, 1600));
+
+		assertEquals(375, result.getWidth());
+		assertEquals(500, result.getHeight());
+	}
+
+	@Test
+	void smallImagesKeepTheirSize() throws IOException {
+		BufferedImage result = resize(jpeg(300, 200));
+
+		assertEquals(300, result.getWidth());
+		assertEquals(200, result.getHeight());
+	}
+
+	@Test
+	void imagesOverThePixelLimitAreRejected() throws IOException {
+		byte[] source = jpeg(5000, 5000);
+
+		assertThrows(ImageResizer.ImageTooLargeException.class,
+				() -> resizer.resize(new ByteArrayInputStream(source), new ByteArrayOutputStream()));
+	}
+
+	@Test
+	void corruptInputIsRejected() {
+		byte[] source = "not an image".getBytes();
+
+		assertThrows(IOException.class,
+				() -> resizer.resize(new ByteArrayInputStream(source), new ByteArrayOutputStream()));
+	}
+
+	private BufferedImage resize(byte[] source) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		resizer.resize(new ByteArrayInputStream(source), out);
+		return ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	private static byte[] jpeg(int width, int height) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "jpg", out);
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,107 @@
+package com.byys.backend_otp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StripedCountersTest {
+
+	private static final int WRITERS = 8;
+	private static final int INCREMENTS_PER_WRITER = 200_000;
+	private static final int KEYS = 64;
+
+	@Test
+	void concurrentIncrementsAreNeverLostWhileDraining() throws Exception {
+		StripedCounters<Long> counters = new StripedCounters<>(8);
+		Map<Long, Long> drained = new ConcurrentHashMap<>();
+		AtomicBoolean writing = new AtomicBoolean(true);
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(WRITERS + 1);
+		try {
+			Future<?> drainer = pool.submit(() -> {
+				start.await();
+				while (writing.get()) {
+					counters.drain((key, delta) -> drained.merge(key, delta, Long::sum));
+				}
+				return null;
+			});
+			Future<?>[] writers = new Future<?>[WRITERS];
+			for (int w = 0; w < WRITERS; w++) {
+				int writer = w;
+				writers[w] = pool.submit(() -> {
+					start.await();
+					for (int i = 0; i < INCREMENTS_PER_WRITER; i++) {
+						// Keys go hot and then cold, so idle cells are retired while other writers still use them
+						long key = ((i / 1_000) + writer) % KEYS;
+						counters.add(key, 1);
+						counters.add(-1L, 1);
+					}
+					return null;
+				});
+			}
+			start.countDown();
+			for (Future<?> writer : writers) {
+				writer.get(60, TimeUnit.SECONDS);
+			}
+			writing.set(false);
+			drainer.get(60, TimeUnit.SECONDS);
+		} finally {
+			pool.shutdownNow();
+		}
+		counters.drain((key, delta) -> drained.merge(key, delta, Long::sum));
+
+		long expectedTotal = (long) WRITERS * INCREMENTS_PER_WRITER;
+		assertEquals(expectedTotal, drained.get(-1L), "hot key lost increments");
+		long spread = drained.entrySet().stream()
+				.filter(entry -> entry.getKey() >= 0)
+				.mapToLong(Map.Entry::getValue)
+				.sum();
+		assertEquals(expectedTotal, spread, "rotating keys lost increments");
+		for (long key = 0; key < KEYS; key++) {
+			assertEquals(expectedKeyCount(key), drained.getOrDefault(key, 0L), "key " + key);
+		}
+	}
+
+	@Test
+	void pendingReportsUndrainedDeltasAndIdleCellsAreRemoved() {
+		StripedCounters<String> counters = new StripedCounters<>(4);
+		counters.add("a", 5);
+		counters.add("a", -2);
+		assertEquals(3, counters.pending("a"));
+		assertEquals(Map.of("a", 3L), counters.pending());
+
+		Map<String, Long> drained = new ConcurrentHashMap<>();
+		counters.drain(drained::put);
+		assertEquals(Map.of("a", 3L), drained);
+		assertEquals(0, counters.pending("a"));
+
+		counters.drain((key, delta) -> { throw new AssertionError("nothing to drain"); });
+		counters.drain((key, delta) -> { throw new AssertionError("nothing to drain"); });
+		assertEquals(0, counters.size());
+
+		counters.add("a", 1);
+		assertTrue(counters.size() == 1 && counters.pending("a") == 1);
+	}
+
+	private static long expectedKeyCount(long key) {
+		long count = 0;
+		for (int writer = 0; writer < WRITERS; writer++) {
+			for (int block = 0; block < INCREMENTS_PER_WRITER / 1_000; block++) {
+				if ((block + writer) % KEYS == key) {
+					count += 1_000;
+				}
+			}
+		}
+		return count;
+	}
+}